@@ -0,0 +1,121 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.Arrays;
+
+// A* over packed boards. With an admissible heuristic the first goal taken
+// off the open list is optimal. Nodes live in a StateArena; the open list is
+// a binary heap of packed (f, h, node index) keys, so pushes never allocate.
+public class AStarSolver implements SolverEngine {
+    private final Heuristic heuristic;
+    private final int expectedStates;
+
+    public AStarSolver(Heuristic heuristic) {
+        this(heuristic, KlotskiSolver.DEFAULT_EXPECTED_STATES);
+    }
+
+    public AStarSolver(Heuristic heuristic, int expectedStates) {
+        this.heuristic = heuristic;
+        this.expectedStates = expectedStates;
+    }
+
+    @Override
+    public String getName() {
+        return "A*";
+    }
+
+    @Override
+    public SolveResult solve(long initialState) {
+        long startTime = System.nanoTime();
+        long expanded = 0;
+
+        StateArena arena = new StateArena();
+        // Cheapest known distance from the start, keyed by mirror-canonical board
+        LongIntHashMap bestCost = new LongIntHashMap(expectedStates);
+        LongHeap open = new LongHeap(expectedStates);
+
+        int h = heuristic.estimate(initialState);
+        arena.add(initialState, StateArena.NO_PARENT, 0);
+        bestCost.put(PackedBoard.canonicalKey(initialState), 0);
+        open.push(key(h, h, 0));
+
+        long[] nextStates = new long[PackedBoard.MAX_MOVES];
+        int[] nextMoves = new int[PackedBoard.MAX_MOVES];
+
+        while (!open.isEmpty()) {
+            long key = open.pop();
+            int index = (int) key;
+            int cost = (int) (key >>> 44) - (int) ((key >>> 32) & 0xFFF);
+            long current = arena.state(index);
+
+            // Skip entries superseded by a cheaper path to the same board
+            if (bestCost.get(PackedBoard.canonicalKey(current), Integer.MAX_VALUE) < cost) continue;
+
+            if (PackedBoard.isSolved(current)) {
+                return new SolveResult(arena.path(index), expanded, bestCost.size(), 1,
+                        System.nanoTime() - startTime);
+            }
+            expanded++;
+
+            int count = PackedBoard.successors(current, nextStates, nextMoves);
+            for (int i = 0; i < count; i++) {
+                long canonical = PackedBoard.canonicalKey(nextStates[i]);
+                if (bestCost.get(canonical, Integer.MAX_VALUE) <= cost + 1) continue;
+                bestCost.put(canonical, cost + 1);
+                int child = arena.add(nextStates[i], index, nextMoves[i]);
+                int childH = heuristic.estimate(nextStates[i]);
+                open.push(key(cost + 1 + childH, childH, child));
+            }
+        }
+
+        return new SolveResult(null, expanded, bestCost.size(), 0, System.nanoTime() - startTime);
+    }
+
+    // Orders by f, then by smaller h (deeper nodes first), then by insertion
+    private static long key(int f, int h, int index) {
+        return (long) f << 44 | (long) h << 32 | index;
+    }
+
+    // Minimal binary min-heap of longs
+    private static class LongHeap {
+        private long[] heap;
+        private int size;
+
+        LongHeap(int capacity) {
+            heap = new long[Math.max(capacity, 16)];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size << 1);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= value) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+                if (heap[child] >= last) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Replaces a file so that readers only ever see the old or the new contents.
+// The new contents go to a uniquely named temporary file in the same
+// directory, which is then renamed over the target in one atomic step. The
+// target is never deleted first, so a crash or a failed rename leaves it
+// intact, and processes writing the same file at once each use their own
+// temporary file: the last complete one wins.
+public final class AtomicFile {
+
+    public interface Writer {
+        void write(File temp) throws IOException;
+    }
+
+    private AtomicFile() {
+    }
+
+    public static void replace(File file, Writer writer) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), file.getName() + ".", ".tmp");
+        try {
+            writer.write(temp.toFile());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.Arrays;
+
+// Legal moves of many packed boards at once, for builders that expand whole
+// frontiers and do not care about move order. Each board is split into one
+// 20-bit mask per piece shape (bit = top-left cell) with a lookup per row,
+// then every piece is checked in parallel with shifts and ANDs against the
+// empty mask: one expression per direction instead of a walk over cells.
+// Successors come out grouped by direction rather than in MoveGenerator's
+// order, so searches whose tie-breaking depends on order keep using that.
+public final class BatchMoveGenerator {
+    private static final int DIRECTIONS = 4;
+    private static final int ROW_BITS = 3 * PackedBoard.WIDTH;
+    private static final int CELL_MASK = (1 << PackedBoard.CELLS) - 1;
+    private static final int COLUMN_0 = 0x11111;
+    private static final int NOT_COLUMN_0 = CELL_MASK & ~COLUMN_0;
+    private static final int NOT_COLUMN_3 = CELL_MASK & ~(COLUMN_0 << 3);
+    private static final int NOT_COLUMN_2_3 = NOT_COLUMN_3 & ~(COLUMN_0 << 2);
+
+    // For each packed row: the empty, soldier, general, Guan Yu and Cao Cao
+    // top-left cells of the row, four bits each from the low end
+    private static final int[] ROWS = new int[1 << ROW_BITS];
+
+    static {
+        int[] codes = {PackedBoard.EMPTY, PackedBoard.SOLDIER, PackedBoard.GENERAL_TOP,
+                PackedBoard.GUAN_YU_LEFT, PackedBoard.CAO_CAO_TOP_LEFT};
+        for (int row = 0; row < ROWS.length; row++) {
+            for (int col = 0; col < PackedBoard.WIDTH; col++) {
+                int code = (row >>> (3 * col)) & 7;
+                for (int shape = 0; shape < codes.length; shape++) {
+                    if (codes[shape] == code) {
+                        ROWS[row] |= 1 << (shape * PackedBoard.WIDTH + col);
+                    }
+                }
+            }
+        }
+    }
+
+    private BatchMoveGenerator() {
+    }
+
+    // Writes four masks per board to masks[(i - from) * 4 + direction]: the
+    // top-left cells of the pieces that can move up, down, left and right
+    public static void legalMoveMasks(long[] boards, int from, int to, int[] masks) {
+        for (int i = from; i < to; i++) {
+            masks(boards[i], masks, (i - from) * DIRECTIONS);
+        }
+    }
+
+    // Writes the successors of boards[from, to) with their packed moves and
+    // the index of the board each came from, and returns how many there are.
+    // The arrays must hold (to - from) * PackedBoard.MAX_MOVES entries.
+    public static int expand(long[] boards, int from, int to, long[] states, int[] moves, int[] parents) {
+        int[] masks = new int[DIRECTIONS];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            long board = boards[i];
+            masks(board, masks, 0);
+            for (int d = 0; d < DIRECTIONS; d++) {
+                for (int cells = masks[d]; cells != 0; cells &= cells - 1) {
+                    int cell = Integer.numberOfTrailingZeros(cells);
+                    int code = PackedBoard.cellAt(board, cell);
+                    states[count] = board ^ MoveGenerator.delta(code, cell, d);
+                    moves[count] = MoveGenerator.packedMove(code, cell, d);
+                    parents[count] = i;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void masks(long board, int[] masks, int offset) {
+        int empty = 0;
+        int soldiers = 0;
+        int generals = 0;
+        int guanYus = 0;
+        int caoCao = 0;
+        for (int row = 0; row < PackedBoard.HEIGHT; row++) {
+            int cells = ROWS[(int) (board >>> (ROW_BITS * row)) & ((1 << ROW_BITS) - 1)];
+            int shift = PackedBoard.WIDTH * row;
+            empty |= (cells & 0xF) << shift;
+            soldiers |= (cells >>> 4 & 0xF) << shift;
+            generals |= (cells >>> 8 & 0xF) << shift;
+            guanYus |= (cells >>> 12 & 0xF) << shift;
+            caoCao |= (cells >>> 16 & 0xF) << shift;
+        }
+
+        // Bit c of (empty << k) says whether cell c - k is empty
+        int above = empty << 4;
+        masks[offset] = ((soldiers | generals) & above)
+                | ((guanYus | caoCao) & above & (empty << 3));
+        masks[offset + 1] = (soldiers & (empty >>> 4))
+                | (generals & (empty >>> 8))
+                | (guanYus & (empty >>> 4) & (empty >>> 5))
+                | (caoCao & (empty >>> 8) & (empty >>> 9));
+        masks[offset + 2] = NOT_COLUMN_0 & (((soldiers | guanYus) & (empty << 1))
+                | ((generals | caoCao) & (empty << 1) & (empty >>> 3)));
+        masks[offset + 3] = (NOT_COLUMN_3 & ((soldiers & (empty >>> 1))
+                | (generals & (empty >>> 1) & (empty >>> 5))))
+                | (NOT_COLUMN_2_3 & ((guanYus & (empty >>> 2))
+                | (caoCao & (empty >>> 2) & (empty >>> 6))));
+    }
+
+    // Times per-board MoveGenerator expansion against the batch kernel over
+    // every position reachable from the classic layout
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        long[] boards = reachable(PackedBoard.encode(new KlotskiGame()));
+        int batch = 1024;
+        long[] states = new long[batch * PackedBoard.MAX_MOVES];
+        int[] moves = new int[batch * PackedBoard.MAX_MOVES];
+        int[] parents = new int[batch * PackedBoard.MAX_MOVES];
+
+        System.out.printf("%d boards, %d rounds\n", boards.length, rounds);
+        for (int pass = 0; pass < 2; pass++) {
+            // The first pass warms up the JIT
+            long checksum = 0;
+            long startTime = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                for (long board : boards) {
+                    int count = MoveGenerator.successors(board, states, moves);
+                    for (int i = 0; i < count; i++) {
+                        checksum += states[i];
+                    }
+                }
+            }
+            double scalar = (System.nanoTime() - startTime) / (double) rounds / boards.length;
+
+            long batchChecksum = 0;
+            startTime = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                for (int from = 0; from < boards.length; from += batch) {
+                    int count = expand(boards, from, Math.min(from + batch, boards.length), states, moves, parents);
+                    for (int i = 0; i < count; i++) {
+                        batchChecksum += states[i];
+                    }
+                }
+            }
+            double batched = (System.nanoTime() - startTime) / (double) rounds / boards.length;
+
+            if (checksum != batchChecksum) {
+                System.err.println("Batch successors differ from MoveGenerator");
+            }
+            if (pass == 1) {
+                System.out.printf("%-10s %8.1f ns/board\n", "scalar", scalar);
+                System.out.printf("%-10s %8.1f ns/board  %.2fx\n", "batch", batched, scalar / batched);
+            }
+        }
+    }
+
+    private static long[] reachable(long start) {
+        LongHashSet seen = new LongHashSet(KlotskiSolver.DEFAULT_EXPECTED_STATES);
+        long[] queue = new long[KlotskiSolver.DEFAULT_EXPECTED_STATES];
+        long[] nextStates = new long[PackedBoard.MAX_MOVES];
+        int[] nextMoves = new int[PackedBoard.MAX_MOVES];
+        int size = 0;
+        queue[size++] = start;
+        seen.add(start);
+        for (int head = 0; head < size; head++) {
+            int count = MoveGenerator.successors(queue[head], nextStates, nextMoves);
+            for (int i = 0; i < count; i++) {
+                if (seen.add(nextStates[i])) {
+                    if (size == queue.length) {
+                        queue = Arrays.copyOf(queue, size * 2);
+                    }
+                    queue[size++] = nextStates[i];
+                }
+            }
+        }
+        return Arrays.copyOf(queue, size);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.jimzhouzzy.klotski;
+
+// Breadth-first search, the engine behind KlotskiSolver.solve.
+// In shortest-path mode it stops at the first goal it generates; otherwise
+// it explores the whole reachable component and counts every solved state.
+public class BfsSolver implements SolverEngine {
+    private final int expectedStates;
+    private final boolean stopAtFirstGoal;
+    private final boolean offHeapVisited;
+
+    public BfsSolver(int expectedStates, boolean stopAtFirstGoal) {
+        this(expectedStates, stopAtFirstGoal, false);
+    }
+
+    // With offHeapVisited the visited set is a RankedVisitedSet instead of a
+    // LongHashSet, keeping it off the heap for very large sweeps
+    public BfsSolver(int expectedStates, boolean stopAtFirstGoal, boolean offHeapVisited) {
+        this.expectedStates = expectedStates;
+        this.stopAtFirstGoal = stopAtFirstGoal;
+        this.offHeapVisited = offHeapVisited;
+    }
+
+    @Override
+    public String getName() {
+        return (stopAtFirstGoal ? "BFS" : "BFS (exhaustive)") + (offHeapVisited ? ", off-heap visited" : "");
+    }
+
+    @Override
+    public SolveResult solve(long initialState) {
+        long startTime = System.nanoTime();
+        int statesExamined = 0;
+        int solutionsFound = 0;
+        int[] bestSolution = null;
+
+        // The arena doubles as the BFS queue: nodes are appended in visiting
+        // order and the head index walks over them. The arena keeps the real
+        // boards so paths need no translation, while visited stores one key per
+        // mirror pair: the goal is symmetric, so a board's mirror image is
+        // exactly as far from it and never needs exploring on its own.
+        VisitedSet visited = offHeapVisited
+                ? RankedVisitedSet.forBoard(initialState) : new LongHashSet(expectedStates);
+        StateArena arena = new StateArena();
+
+        arena.add(initialState, StateArena.NO_PARENT, 0);
+        visited.add(PackedBoard.canonicalKey(initialState));
+
+        long[] nextStates = new long[PackedBoard.MAX_MOVES];
+        int[] nextMoves = new int[PackedBoard.MAX_MOVES];
+
+        // The first goal generated is the first goal BFS would dequeue
+        int goalIndex = stopAtFirstGoal && PackedBoard.isSolved(initialState) ? 0 : -1;
+
+        for (int head = 0; head < arena.size() && goalIndex < 0; head++) {
+            long current = arena.state(head);
+            statesExamined++;
+
+            // Check if current state is a solution
+            if (PackedBoard.isSolved(current)) {
+                solutionsFound++;
+                if (bestSolution == null) {
+                    bestSolution = arena.path(head); // Later goals are never closer
+                }
+                continue; // Continue searching for other solutions
+            }
+
+            // Generate all possible next moves
+            int count = PackedBoard.successors(current, nextStates, nextMoves);
+            for (int i = 0; i < count; i++) {
+                if (visited.add(PackedBoard.canonicalKey(nextStates[i]))) {
+                    int index = arena.add(nextStates[i], head, nextMoves[i]);
+                    if (stopAtFirstGoal && PackedBoard.isSolved(nextStates[i])) {
+                        goalIndex = index;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (goalIndex >= 0) {
+            solutionsFound = 1;
+            bestSolution = arena.path(goalIndex);
+        }
+
+        return new SolveResult(bestSolution, statesExamined, visited.size(), solutionsFound,
+                System.nanoTime() - startTime);
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free map from long keys to the smallest positive long offered for
+// each key. Fixed capacity (linear probing, no resizing), so callers size it
+// for the most keys they can insert. Key 0 is reserved for free slots.
+public class ConcurrentLongMinMap {
+    private final AtomicLongArray keys;
+    private final AtomicLongArray values;
+    private final int mask;
+
+    public ConcurrentLongMinMap(int maxSize) {
+        int capacity = LongHashSet.tableSizeFor(maxSize);
+        keys = new AtomicLongArray(capacity);
+        values = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+    }
+
+    // Records the value if the key is new or the value is smaller than the one
+    // held. Returns true if the key was not present before.
+    public boolean offer(long key, long value) {
+        int slot = LongHashSet.mix(key) & mask;
+        boolean inserted = false;
+        while (true) {
+            long current = keys.get(slot);
+            if (current == 0L) {
+                if (keys.compareAndSet(slot, 0L, key)) {
+                    inserted = true;
+                    break;
+                }
+                current = keys.get(slot);
+            }
+            if (current == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // 0 means no value yet: a racing thread may have claimed the slot
+        // without publishing its value
+        long held;
+        do {
+            held = values.get(slot);
+            if (held != 0L && held <= value) {
+                return inserted;
+            }
+        } while (!values.compareAndSet(slot, held, value));
+        return inserted;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Raw slot access for draining the map once writers are done; free slots have key 0
+    public long keyAt(int slot) {
+        return keys.get(slot);
+    }
+
+    public long valueAt(int slot) {
+        return values.get(slot);
+    }
+}
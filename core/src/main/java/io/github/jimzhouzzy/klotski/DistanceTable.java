@@ -0,0 +1,57 @@
+package io.github.jimzhouzzy.klotski;
+
+// Exact distance-to-goal lookups. Solving is a walk downhill: from any
+// solvable board some successor is exactly one move closer.
+public interface DistanceTable extends SolverEngine {
+    int UNREACHABLE = -1;
+
+    // Number of moves to the nearest goal, or UNREACHABLE
+    int distance(long board);
+
+    // Number of positions the table covers
+    long size();
+
+    default int distance(KlotskiGame game) {
+        return distance(PackedBoard.encode(game));
+    }
+
+    // A move that brings the board one step closer to the goal, or -1 if the
+    // board is already solved or cannot be solved
+    default int bestMove(long board) {
+        int distance = distance(board);
+        if (distance <= 0) {
+            return -1;
+        }
+        long[] nextStates = new long[PackedBoard.MAX_MOVES];
+        int[] nextMoves = new int[PackedBoard.MAX_MOVES];
+        int count = PackedBoard.successors(board, nextStates, nextMoves);
+        for (int i = 0; i < count; i++) {
+            if (distance(nextStates[i]) == distance - 1) {
+                return nextMoves[i];
+            }
+        }
+        return -1;
+    }
+
+    // An optimal solution as packed moves, or null if the board cannot be solved
+    default int[] solution(long board) {
+        int distance = distance(board);
+        if (distance == UNREACHABLE) {
+            return null;
+        }
+        int[] moves = new int[distance];
+        for (int i = 0; i < distance; i++) {
+            moves[i] = bestMove(board);
+            board = PackedBoard.applyMove(board, moves[i]);
+        }
+        return moves;
+    }
+
+    @Override
+    default SolveResult solve(long board) {
+        long startTime = System.nanoTime();
+        int[] moves = solution(board);
+        return new SolveResult(moves, moves != null ? moves.length : 0, size(), moves != null ? 1 : 0,
+                System.nanoTime() - startTime);
+    }
+}
@@ -0,0 +1,358 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Breadth-first search that keeps its layers on disk instead of in memory.
+// Each layer is a file of sorted canonical keys. The successors of a layer
+// are gathered into fixed-size buffers that are sorted and written as runs,
+// then the runs are merged, deduplicated and filtered against the current
+// and previous layers in one streaming pass. Moves are reversible, so a
+// successor can only repeat a board from those two layers and older ones
+// never need reading. The exception is solved boards, which are never
+// expanded and so can come up again much later; the few of those are
+// remembered in memory. Otherwise memory stays at one run buffer plus a
+// read buffer per open file, however large the state space.
+// Layers carry no parents; the solution path is recovered at the end by
+// stepping back from the goal and binary-searching each earlier layer file.
+public class ExternalBfsSolver implements SolverEngine {
+    public static final int DEFAULT_RUN_SIZE = 1 << 20;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    // Boards expanded per call to BatchMoveGenerator
+    private static final int BATCH = 256;
+
+    private final File directory;
+    private final int runSize;
+    private final boolean stopAtFirstGoal;
+
+    // Layers go to a fresh temporary directory for every solve
+    public ExternalBfsSolver(int runSize, boolean stopAtFirstGoal) {
+        this(null, runSize, stopAtFirstGoal);
+    }
+
+    public ExternalBfsSolver(File directory, int runSize, boolean stopAtFirstGoal) {
+        this.directory = directory;
+        this.runSize = runSize;
+        this.stopAtFirstGoal = stopAtFirstGoal;
+    }
+
+    @Override
+    public String getName() {
+        return stopAtFirstGoal ? "External BFS" : "External BFS (exhaustive)";
+    }
+
+    @Override
+    public SolveResult solve(long initialState) {
+        long startTime = System.nanoTime();
+        List<File> files = new ArrayList<>();
+        File workDirectory = null;
+        boolean temporary = directory == null;
+        try {
+            if (temporary) {
+                workDirectory = Files.createTempDirectory("klotski-bfs").toFile();
+            } else {
+                workDirectory = directory;
+                workDirectory.mkdirs();
+            }
+            return search(initialState, workDirectory, files, startTime);
+        } catch (IOException e) {
+            System.err.println("Failed to run external BFS: " + e.getMessage());
+            return new SolveResult(null, 0, 0, 0, System.nanoTime() - startTime);
+        } finally {
+            for (File file : files) {
+                file.delete();
+            }
+            if (temporary && workDirectory != null) {
+                workDirectory.delete();
+            }
+        }
+    }
+
+    private SolveResult search(long initialState, File workDirectory, List<File> files, long startTime)
+            throws IOException {
+        if (stopAtFirstGoal && PackedBoard.isSolved(initialState)) {
+            return new SolveResult(new int[0], 0, 1, 1, System.nanoTime() - startTime);
+        }
+
+        List<File> layers = new ArrayList<>();
+        List<Long> layerSizes = new ArrayList<>();
+        File first = new File(workDirectory, "layer-0.bin");
+        files.add(first);
+        try (LongWriter out = new LongWriter(first)) {
+            out.write(PackedBoard.canonicalKey(initialState));
+        }
+        layers.add(first);
+        layerSizes.add(1L);
+
+        LongHashSet solvedBoards = new LongHashSet(16);
+        long expanded = 0;
+        long visited = 1;
+        int solutionsFound = 0;
+        int goalDepth = -1;
+        long goalKey = 0L;
+
+        long[] buffer = new long[runSize];
+        long[] batch = new long[BATCH];
+        long[] nextStates = new long[BATCH * PackedBoard.MAX_MOVES];
+        int[] nextMoves = new int[BATCH * PackedBoard.MAX_MOVES];
+        int[] parents = new int[BATCH * PackedBoard.MAX_MOVES];
+
+        for (int depth = 0; goalDepth < 0 || !stopAtFirstGoal; depth++) {
+            File current = layers.get(depth);
+
+            // Expand the layer into sorted runs. Runs are sorted anyway, so
+            // successors are generated a batch of boards at a time.
+            List<File> runs = new ArrayList<>();
+            int count = 0;
+            try (LongReader in = new LongReader(current)) {
+                while (in.hasNext()) {
+                    int batchSize = 0;
+                    while (batchSize < BATCH && in.hasNext()) {
+                        long board = in.next();
+                        expanded++;
+                        // Solved boards are counted but never expanded, as in BfsSolver
+                        if (PackedBoard.isSolved(board)) {
+                            solutionsFound++;
+                            if (goalDepth < 0) {
+                                goalDepth = depth;
+                                goalKey = board;
+                            }
+                            continue;
+                        }
+                        batch[batchSize++] = board;
+                    }
+                    int successors = BatchMoveGenerator.expand(batch, 0, batchSize, nextStates, nextMoves, parents);
+                    for (int i = 0; i < successors; i++) {
+                        buffer[count++] = PackedBoard.canonicalKey(nextStates[i]);
+                        if (count == runSize) {
+                            runs.add(writeRun(workDirectory, files, depth, runs.size(), buffer, count));
+                            count = 0;
+                        }
+                    }
+                }
+            }
+            if (count > 0) {
+                runs.add(writeRun(workDirectory, files, depth, runs.size(), buffer, count));
+            }
+
+            // Merge the runs into the next layer, dropping boards of this and the previous layer
+            File next = new File(workDirectory, "layer-" + (depth + 1) + ".bin");
+            files.add(next);
+            long size = 0;
+            List<LongReader> readers = new ArrayList<>();
+            try (LongWriter out = new LongWriter(next)) {
+                PriorityQueue<LongReader> merge = new PriorityQueue<>(Comparator.comparingLong(LongReader::peek));
+                for (File run : runs) {
+                    LongReader reader = new LongReader(run);
+                    readers.add(reader);
+                    if (reader.hasNext()) merge.add(reader);
+                }
+                LongReader previous = depth > 0 ? new LongReader(layers.get(depth - 1)) : LongReader.EMPTY;
+                LongReader same = new LongReader(current);
+                readers.add(previous);
+                readers.add(same);
+
+                boolean haveLast = false;
+                long last = 0L;
+                while (!merge.isEmpty()) {
+                    LongReader reader = merge.poll();
+                    long key = reader.next();
+                    if (reader.hasNext()) merge.add(reader);
+
+                    if (haveLast && key == last) continue;
+                    haveLast = true;
+                    last = key;
+                    if (previous.skipTo(key) || same.skipTo(key)) continue;
+                    if (PackedBoard.isSolved(key) && !solvedBoards.add(key)) continue;
+
+                    out.write(key);
+                    size++;
+                    if (stopAtFirstGoal && PackedBoard.isSolved(key)) {
+                        // Nothing further is needed once a goal is generated
+                        goalDepth = depth + 1;
+                        goalKey = key;
+                        solutionsFound = 1;
+                        break;
+                    }
+                }
+            } finally {
+                for (LongReader reader : readers) {
+                    reader.close();
+                }
+                for (File run : runs) {
+                    run.delete();
+                }
+            }
+
+            if (size == 0) {
+                break;
+            }
+            layers.add(next);
+            layerSizes.add(size);
+            visited += size;
+        }
+
+        int[] moves = goalDepth < 0 ? null : path(initialState, goalDepth, goalKey, layers, layerSizes);
+        return new SolveResult(moves, expanded, visited, solutionsFound, System.nanoTime() - startTime);
+    }
+
+    private File writeRun(File workDirectory, List<File> files, int depth, int index, long[] buffer, int count)
+            throws IOException {
+        Arrays.sort(buffer, 0, count);
+        File run = new File(workDirectory, "run-" + depth + "-" + index + ".bin");
+        files.add(run);
+        try (LongWriter out = new LongWriter(run)) {
+            long last = 0L;
+            for (int i = 0; i < count; i++) {
+                if (i > 0 && buffer[i] == last) continue;
+                last = buffer[i];
+                out.write(last);
+            }
+        }
+        return run;
+    }
+
+    // Walks back from the goal one layer at a time, then replays the chain of
+    // canonical keys forwards from the real starting board to recover moves
+    private int[] path(long initialState, int goalDepth, long goalKey, List<File> layers, List<Long> layerSizes)
+            throws IOException {
+        long[] keys = new long[goalDepth + 1];
+        keys[goalDepth] = goalKey;
+        long[] nextStates = new long[PackedBoard.MAX_MOVES];
+        int[] nextMoves = new int[PackedBoard.MAX_MOVES];
+
+        for (int depth = goalDepth - 1; depth >= 0; depth--) {
+            int count = PackedBoard.successors(keys[depth + 1], nextStates, nextMoves);
+            keys[depth] = 0L;
+            try (RandomAccessFile layer = new RandomAccessFile(layers.get(depth), "r")) {
+                for (int i = 0; i < count && keys[depth] == 0L; i++) {
+                    long key = PackedBoard.canonicalKey(nextStates[i]);
+                    if (contains(layer, layerSizes.get(depth), key)) {
+                        keys[depth] = key;
+                    }
+                }
+            }
+            if (keys[depth] == 0L) {
+                throw new IOException("Layer " + depth + " has no predecessor of the path");
+            }
+        }
+
+        int[] moves = new int[goalDepth];
+        long board = initialState;
+        for (int depth = 1; depth <= goalDepth; depth++) {
+            int count = PackedBoard.successors(board, nextStates, nextMoves);
+            for (int i = 0; i < count; i++) {
+                if (PackedBoard.canonicalKey(nextStates[i]) == keys[depth]) {
+                    moves[depth - 1] = nextMoves[i];
+                    board = nextStates[i];
+                    break;
+                }
+            }
+        }
+        return moves;
+    }
+
+    private static boolean contains(RandomAccessFile layer, long size, long key) throws IOException {
+        long low = 0;
+        long high = size - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            layer.seek(middle * Long.BYTES);
+            long value = layer.readLong();
+            if (value < key) {
+                low = middle + 1;
+            } else if (value > key) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class LongWriter implements AutoCloseable {
+        private final DataOutputStream out;
+
+        LongWriter(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_BYTES));
+        }
+
+        void write(long value) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // Sequential reader over a sorted file of longs
+    private static class LongReader implements AutoCloseable {
+        static final LongReader EMPTY = new LongReader();
+
+        private final DataInputStream in;
+        private long remaining;
+        private long head;
+
+        private LongReader() {
+            in = null;
+        }
+
+        LongReader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_BYTES));
+            remaining = file.length() / Long.BYTES;
+            advance();
+        }
+
+        boolean hasNext() {
+            return remaining >= 0 && in != null;
+        }
+
+        long peek() {
+            return head;
+        }
+
+        long next() throws IOException {
+            long value = head;
+            advance();
+            return value;
+        }
+
+        // Skips values below the key and reports whether the key comes next
+        boolean skipTo(long key) throws IOException {
+            while (hasNext() && head < key) {
+                advance();
+            }
+            return hasNext() && head == key;
+        }
+
+        private void advance() throws IOException {
+            if (remaining > 0) {
+                head = in.readLong();
+            }
+            remaining--;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+}
@@ -47,6 +47,7 @@ import io.github.jimzhouzzy.klotski.RectangleBlockActor;
 
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.io.*;
 import java.nio.file.Files;
@@ -87,8 +88,10 @@ public class GameScreen extends ApplicationAdapter implements Screen {
 
     private KlotskiGame game; // Reference to the game logic
     private Klotski klotski; // Reference to the main game class
-    private List<String> solution; // Stores the current solution
+    private List<Move> solution; // Stores the current solution
     private int solutionIndex; // Tracks the current step in the solution
+    private CompletableFuture<List<Move>> hintRequest; // Background solve for a pending hint
+    private CompletableFuture<List<Move>> autoSolveRequest; // Background solve before auto-solving starts
 
     private TextButton autoButton;
 
@@ -450,7 +453,6 @@ public class GameScreen extends ApplicationAdapter implements Screen {
         float targetY = (rows - toRow - piece.height) * cellSize;
 
         game.applyAction(new int[] { fromRow, fromCol }, new int[] { toRow, toCol });
-        piece.setPosition(new int[] { toRow, toCol });
         recordMove(new int[] { fromRow, fromCol }, new int[] { toRow, toCol });
         isTerminal = game.isTerminal();
         broadcastGameState();
@@ -602,22 +604,18 @@ public class GameScreen extends ApplicationAdapter implements Screen {
             }
 
             if (allAnimationsFinished) {
-                // Parse the current move
-                String move = solution.get(solutionIndex);
-                System.out.println("Auto-solving step: " + move);
-
-                String[] parts = move.split(" ");
-                int fromIndex = move.indexOf(" from ");
-                String fromPart = move.substring(fromIndex + 6, move.indexOf(" to "));
-                String toPart = move.substring(move.indexOf(" to ") + 4);
-
-                int fromRow = Integer.parseInt(fromPart.substring(1, fromPart.indexOf(',')));
-                int fromCol = Integer.parseInt(fromPart.substring(fromPart.indexOf(',') + 1, fromPart.length() - 1));
-                int toRow = Integer.parseInt(toPart.substring(1, toPart.indexOf(',')));
-                int toCol = Integer.parseInt(toPart.substring(toPart.indexOf(',') + 1, toPart.length() - 1));
+                // The current move
+                Move move = solution.get(solutionIndex);
+                System.out.println("Auto-solving step: " + move.describe(game));
+
+                int fromRow = move.getFromRow();
+                int fromCol = move.getFromCol();
+                int toRow = move.getToRow();
+                int toCol = move.getToCol();
                 System.out.println(game.toString());
 
-                // Find the block at the starting position
+                // Find the block at the starting position, as applyAction does.
+                // Identical pieces may have swapped since the solve, so not by id.
                 for (RectangleBlockActor block : blocks) {
                     KlotskiGame.KlotskiPiece piece = game.getPiece(block.pieceId);
                     if (piece.position[0] == fromRow && piece.position[1] == fromCol) {
@@ -625,7 +623,6 @@ public class GameScreen extends ApplicationAdapter implements Screen {
                         float targetX = toCol * cellSize;
                         float targetY = (rows - toRow - piece.height) * cellSize; // Invert y-axis
                         game.applyAction(new int[] { fromRow, fromCol }, new int[] { toRow, toCol });
-                        piece.setPosition(new int[] { toRow, toCol });
                         recordMove(new int[] { fromRow, fromCol }, new int[] { toRow, toCol });
                         solutionIndex++;
                         this.isTerminal = game.isTerminal(); // Check if the game is in a terminal state
@@ -687,6 +684,7 @@ public class GameScreen extends ApplicationAdapter implements Screen {
 
     @Override
     public void dispose() {
+        cancelPendingSolves();
         stage.dispose();
         skin.dispose();
         shapeRenderer.dispose();
@@ -700,6 +698,7 @@ public class GameScreen extends ApplicationAdapter implements Screen {
     private void handleRestart(KlotskiGame game) {
         // Stop auto-solving if active
         stopAutoSolving();
+        cancelPendingSolves();
 
         // Reset the timer
         elapsedTime = 0;
@@ -727,25 +726,27 @@ public class GameScreen extends ApplicationAdapter implements Screen {
     }
 
     private void handleHint(KlotskiGame game) {
-        // Get the solution from the solver
-        List<String> solution = KlotskiSolver.solve(game);
+        if (hintRequest != null && !hintRequest.isDone()) {
+            return; // Still working on the previous hint
+        }
+        // Solve in the background; the hint is shown once the result arrives
+        hintRequest = requestSolution(game);
+        hintRequest.thenAccept(solution -> showHint(game, solution));
+    }
 
+    private void showHint(KlotskiGame game, List<Move> solution) {
         if (solution != null && !solution.isEmpty()) {
-            // Parse the first move from the solution
-            String move = solution.get(0);
-            System.out.println("Hint: " + move);
-
-            String[] parts = move.split(" ");
-            int fromIndex = move.indexOf(" from ");
-            String fromPart = move.substring(fromIndex + 6, move.indexOf(" to "));
-            String toPart = move.substring(move.indexOf(" to ") + 4);
+            // The first move of the solution
+            Move move = solution.get(0);
+            System.out.println("Hint: " + move.describe(game));
 
-            int fromRow = Integer.parseInt(fromPart.substring(1, fromPart.indexOf(',')));
-            int fromCol = Integer.parseInt(fromPart.substring(fromPart.indexOf(',') + 1, fromPart.length() - 1));
-            int toRow = Integer.parseInt(toPart.substring(1, toPart.indexOf(',')));
-            int toCol = Integer.parseInt(toPart.substring(toPart.indexOf(',') + 1, toPart.length() - 1));
+            int fromRow = move.getFromRow();
+            int fromCol = move.getFromCol();
+            int toRow = move.getToRow();
+            int toCol = move.getToCol();
 
-            // Find the block at the starting position
+            // Find the block at the starting position, as applyAction does.
+            // Identical pieces may have swapped since the solve, so not by id.
             for (RectangleBlockActor block : blocks) {
                 KlotskiGame.KlotskiPiece piece = game.getPiece(block.pieceId);
                 System.out.printf("Block ID: %d, Position: (%d, %d)\n", piece.id, piece.position[0], piece.position[1]);
@@ -756,9 +757,13 @@ public class GameScreen extends ApplicationAdapter implements Screen {
                     block.addAction(Actions.sequence(
                             Actions.moveTo(targetX, targetY, 0.1f), // Smooth animation
                             Actions.run(() -> {
-                                // Update game logic after animation
+                                // Update game logic after animation, unless the board
+                                // changed meanwhile; then the blocks snap back to it
+                                if (!game.isLegalMove(new int[] { fromRow, fromCol }, new int[] { toRow, toCol })) {
+                                    updateBlocksFromGame(game);
+                                    return;
+                                }
                                 game.applyAction(new int[] { fromRow, fromCol }, new int[] { toRow, toCol });
-                                piece.setPosition(new int[] { toRow, toCol });
                                 recordMove(new int[] { fromRow, fromCol }, new int[] { toRow, toCol });
                                 this.isTerminal = game.isTerminal(); // Check if the game is in a terminal state
                                 broadcastGameState();
@@ -776,19 +781,44 @@ public class GameScreen extends ApplicationAdapter implements Screen {
         if (isAutoSolving()) {
             stopAutoSolving(); // Stop auto-solving if already active
             autoButton.setText("Auto"); // Change button text back to "Auto"
+        } else if (autoSolveRequest != null && !autoSolveRequest.isDone()) {
+            autoSolveRequest.cancel(false); // Clicked again before the solution arrived
         } else {
             solution = null; // Clear the previous solution
             solutionIndex = 0; // Reset the solution index
-            List<String> newSolution = KlotskiSolver.solve(game); // Get the new solution
-
-            if (newSolution != null && !newSolution.isEmpty()) {
-                solution = newSolution; // Store the solution
-                isAutoSolving = true; // Enable auto-solving mode
-                autoButton.setText("Stop"); // Change button text to "Stop"
-                System.out.println("Auto-solving started.");
-            } else {
-                System.out.println("No solution found.");
-            }
+            autoButton.setText("Solving...");
+
+            // Solve in the background; auto-solving starts once the result arrives
+            autoSolveRequest = requestSolution(game);
+            autoSolveRequest.whenComplete((newSolution, error) -> {
+                if (newSolution != null && !newSolution.isEmpty()) {
+                    solution = newSolution; // Store the solution
+                    isAutoSolving = true; // Enable auto-solving mode
+                    System.out.println("Auto-solving started.");
+                } else if (error == null) {
+                    System.out.println("No solution found.");
+                }
+                updateAutoButtonText(autoButton);
+            });
+        }
+    }
+
+    // Solution for the current position: straight from the solution cache
+    // when an earlier solve passed through it, otherwise from the solver thread
+    private CompletableFuture<List<Move>> requestSolution(KlotskiGame game) {
+        List<Move> cached = KlotskiSolver.cachedMoves(game);
+        return cached != null ? CompletableFuture.completedFuture(cached) : klotski.solverService.solve(game);
+    }
+
+    // Drops background solves for a position the board has already left,
+    // including the hint prefetch, whether or not a new one follows
+    private void cancelPendingSolves() {
+        klotski.solverService.cancelPrefetch();
+        if (hintRequest != null) {
+            hintRequest.cancel(false);
+        }
+        if (autoSolveRequest != null) {
+            autoSolveRequest.cancel(false);
         }
     }
 
@@ -913,6 +943,8 @@ public class GameScreen extends ApplicationAdapter implements Screen {
     }
 
     public void recordMove(int[] from, int[] to) {
+        cancelPendingSolves();
+
         // Remove any redo history if we are making a new move
         while (moveHistory.size() > currentMoveIndex + 1) {
             moveHistory.remove(moveHistory.size() - 1);
@@ -923,10 +955,21 @@ public class GameScreen extends ApplicationAdapter implements Screen {
         currentMoveIndex++;
 
         movesLabel.setText("Moves: " + (currentMoveIndex + 1));
+
+        prefetchHint();
+    }
+
+    // Hints are usually asked for right after a move; start on one now
+    // unless an earlier solution already covers this position
+    private void prefetchHint() {
+        if (!isAutoSolving && !KlotskiSolver.hasCachedSolution(game)) {
+            klotski.solverService.prefetch(game);
+        }
     }
 
     private void handleUndo() {
         if (currentMoveIndex >= 0) {
+            cancelPendingSolves();
             int[][] lastMove = moveHistory.get(currentMoveIndex);
             int[] from = lastMove[1]; // Reverse the move
             int[] to = lastMove[0];
@@ -934,6 +977,7 @@ public class GameScreen extends ApplicationAdapter implements Screen {
             game.applyAction(from, to); // Apply the reverse move
             updateBlocksFromGame(game); // Update the blocks
             currentMoveIndex--; // Move back in history
+            prefetchHint();
 
             movesLabel.setText("Moves: " + (currentMoveIndex + 1));
 
@@ -947,6 +991,7 @@ public class GameScreen extends ApplicationAdapter implements Screen {
 
     private void handleRedo() {
         if (currentMoveIndex < moveHistory.size() - 1) {
+            cancelPendingSolves();
             currentMoveIndex++;
             int[][] nextMove = moveHistory.get(currentMoveIndex);
             int[] from = nextMove[0];
@@ -954,6 +999,7 @@ public class GameScreen extends ApplicationAdapter implements Screen {
 
             game.applyAction(from, to); // Apply the move
             updateBlocksFromGame(game); // Update the blocks
+            prefetchHint();
 
             movesLabel.setText("Moves: " + (currentMoveIndex + 1));
 
@@ -1197,6 +1243,7 @@ public class GameScreen extends ApplicationAdapter implements Screen {
     @Override
     public void hide() {
         Gdx.input.setInputProcessor(null);
+        cancelPendingSolves();
 
         // Cancel the auto-save task when the screen is hidden
         if (autoSaveTask != null) {
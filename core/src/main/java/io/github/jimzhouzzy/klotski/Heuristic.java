@@ -0,0 +1,7 @@
+package io.github.jimzhouzzy.klotski;
+
+// Lower bound on the number of moves from a packed board to the goal.
+// Implementations must never overestimate, or informed searches lose optimality.
+public interface Heuristic {
+    int estimate(long board);
+}
@@ -0,0 +1,130 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Iterative-deepening A*: repeated depth-first searches bounded by f = g + h.
+// Memory only grows with the solution depth, at the price of re-expanding
+// nodes on every iteration, so it suits positions close to the goal.
+// With a transposition table, every failed subtree leaves behind a tighter
+// lower bound for its root, which cuts the re-expansion while memory stays
+// at the table's fixed size however hard the puzzle is.
+public class IdaStarSolver implements SolverEngine {
+    private static final int FOUND = -1;
+    private static final int NO_MOVE = -1;
+
+    private final Heuristic heuristic;
+    private final TranspositionTable table;
+
+    // Per-search state, reset by solve()
+    private long expanded;
+    private long[] pathKeys;
+    private int[] pathMoves;
+    private int solutionLength;
+    private final List<long[]> stateBuffers = new ArrayList<>();
+    private final List<int[]> moveBuffers = new ArrayList<>();
+
+    public IdaStarSolver(Heuristic heuristic) {
+        this.heuristic = heuristic;
+        this.table = null;
+    }
+
+    // Bounds learned during one solve are kept for the next
+    public IdaStarSolver(Heuristic heuristic, int tableMegabytes) {
+        this.heuristic = heuristic;
+        this.table = new TranspositionTable(tableMegabytes);
+    }
+
+    @Override
+    public String getName() {
+        return table == null ? "IDA*" : "IDA* (" + table.capacity() + "-entry table)";
+    }
+
+    @Override
+    public synchronized SolveResult solve(long initialState) {
+        long startTime = System.nanoTime();
+        expanded = 0;
+        pathKeys = new long[64];
+        pathMoves = new int[64];
+
+        int bound = heuristic.estimate(initialState);
+        while (true) {
+            pathKeys[0] = PackedBoard.canonicalKey(initialState);
+            int result = search(initialState, pathKeys[0], 0, bound, NO_MOVE);
+            if (result == FOUND) {
+                int[] moves = new int[solutionLength];
+                System.arraycopy(pathMoves, 0, moves, 0, solutionLength);
+                return new SolveResult(moves, expanded, expanded, 1, System.nanoTime() - startTime);
+            }
+            if (result == Integer.MAX_VALUE) {
+                return new SolveResult(null, expanded, expanded, 0, System.nanoTime() - startTime);
+            }
+            bound = result;
+        }
+    }
+
+    // Returns FOUND, or the smallest f that exceeded the bound below this node
+    private int search(long board, long key, int depth, int bound, int previousMove) {
+        int f = depth + estimate(board, key);
+        if (f > bound) return f;
+        if (PackedBoard.isSolved(board)) {
+            solutionLength = depth;
+            return FOUND;
+        }
+        expanded++;
+
+        if (depth == stateBuffers.size()) {
+            stateBuffers.add(new long[PackedBoard.MAX_MOVES]);
+            moveBuffers.add(new int[PackedBoard.MAX_MOVES]);
+        }
+        if (depth + 1 >= pathKeys.length) {
+            pathKeys = Arrays.copyOf(pathKeys, pathKeys.length << 1);
+            pathMoves = Arrays.copyOf(pathMoves, pathMoves.length << 1);
+        }
+        long[] nextStates = stateBuffers.get(depth);
+        int[] nextMoves = moveBuffers.get(depth);
+
+        int min = Integer.MAX_VALUE;
+        // Lower bound on this board's distance learned from the children. A
+        // skipped child (the way back, or a board already on the path) still
+        // counts with its estimate, so the bound never assumes the path.
+        int learned = Integer.MAX_VALUE;
+        int reverse = previousMove == NO_MOVE ? NO_MOVE : PackedBoard.reverseMove(previousMove);
+        int count = PackedBoard.successors(board, nextStates, nextMoves);
+        for (int i = 0; i < count; i++) {
+            long nextKey = PackedBoard.canonicalKey(nextStates[i]);
+            if (nextMoves[i] == reverse || isOnPath(nextKey, depth)) {
+                if (table != null) {
+                    learned = Math.min(learned, 1 + estimate(nextStates[i], nextKey));
+                }
+                continue;
+            }
+
+            pathKeys[depth + 1] = nextKey;
+            pathMoves[depth] = nextMoves[i];
+            int result = search(nextStates[i], nextKey, depth + 1, bound, nextMoves[i]);
+            if (result == FOUND) return FOUND;
+            min = Math.min(min, result);
+        }
+        if (table != null) {
+            learned = Math.min(learned, min == Integer.MAX_VALUE ? Integer.MAX_VALUE : min - depth);
+            if (learned != Integer.MAX_VALUE) {
+                table.store(key, learned, bound - depth);
+            }
+        }
+        return min;
+    }
+
+    private int estimate(long board, long key) {
+        int estimate = heuristic.estimate(board);
+        return table == null ? estimate : Math.max(estimate, table.bound(key));
+    }
+
+    private boolean isOnPath(long key, int depth) {
+        for (int i = depth; i >= 0; i--) {
+            if (pathKeys[i] == key) return true;
+        }
+        return false;
+    }
+}
@@ -44,6 +44,7 @@ public class Klotski extends Game {
     public GameScreen gameScreen;
     public MainScreen mainScreen;
     public DynamicBoard dynamicBoard;
+    public SolverService solverService;
     public WebServer webServer;
     public SettingsScreen settingsScreen;
     public HelpScreen helpScreen;
@@ -81,6 +82,11 @@ public class Klotski extends Game {
         // Cresate dynamic board before screens
         this.dynamicBoard = new DynamicBoard(this, null);
 
+        // Background solver shared by the screens
+        this.solverService = new SolverService();
+        // Start reading solutions stored by earlier sessions
+        SolutionStore.getInstance().warmUp();
+
         // After the user loading, settings screen must come first to load settings
         this.settingsScreen = new SettingsScreen(this);
         // MUST before load configurations
@@ -203,6 +209,8 @@ public class Klotski extends Game {
     public void dispose() {
         batch.dispose();
         font.dispose();
+        solverService.shutdown();
+        SolutionStore.closeInstance();
         try {
             webSocketServer.stop();
         } catch (Exception e) {
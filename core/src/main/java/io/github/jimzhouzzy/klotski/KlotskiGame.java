@@ -2,6 +2,7 @@ package io.github.jimzhouzzy.klotski;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -68,7 +69,8 @@ public class KlotskiGame {
             return position[1];
         }
 
-        public void setPosition(int[] position) {
+        // Only KlotskiGame moves pieces, so its grid and hash stay in step
+        private void setPosition(int[] position) {
             this.position = position.clone();
         }
 
@@ -91,6 +93,30 @@ public class KlotskiGame {
     private int moveCount;
     public static final int BOARD_WIDTH = 4;
     public static final int BOARD_HEIGHT = 5;
+    // Up, down, left, right, matching MoveGenerator's direction indices
+    private static final int[][] DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private static final byte EMPTY_CELL = -1;
+
+    // Index into pieces of the piece covering each cell (row * BOARD_WIDTH + col),
+    // or EMPTY_CELL. Kept in step by initialize, setPieces, restore, applyAction
+    // and movePiece, so positions must only change through them.
+    private final byte[] grid = new byte[BOARD_HEIGHT * BOARD_WIDTH];
+
+    // Zobrist keys indexed by [PackedBoard top-left code][top-left cell]. Pieces
+    // of the same shape share keys, so swapping two of them keeps the hash.
+    // The seed is fixed so hashes are stable across runs and processes.
+    private static final long[][] ZOBRIST_KEYS = new long[8][BOARD_HEIGHT * BOARD_WIDTH];
+    static {
+        Random random = new Random(0x5A6F6272697374L);
+        for (long[] keys : ZOBRIST_KEYS) {
+            for (int cell = 0; cell < keys.length; cell++) {
+                keys[cell] = random.nextLong();
+            }
+        }
+    }
+
+    // XOR of the keys of all pieces, maintained alongside the grid
+    private long positionHash;
 
     public KlotskiGame() {
         initialize();
@@ -115,20 +141,39 @@ public class KlotskiGame {
         pieces[9] = new KlotskiPiece(9, "Soldier 4", 'S', 1, 1, new int[]{4, 3});
 
         moveCount = 0;
+        rebuildGrid();
     }
 
     public void applyAction(int[] from, int[] to) {
         if (isLegalMove(from, to)) {
-            KlotskiPiece piece = getPieceAt(from);
+            int index = grid[from[0] * BOARD_WIDTH + from[1]];
+            KlotskiPiece piece = pieces[index];
             int[] offset = {to[0] - from[0], to[1] - from[1]};
 
             // Calculate the piece's new position (top-left corner)
             int[] newPos = {piece.position[0] + offset[0], piece.position[1] + offset[1]};
-            piece.setPosition(newPos);
-            moveCount++;
+            place(index, newPos);
         }
     }
 
+    // Puts a piece straight at a new top-left position, e.g. where a drag
+    // across several cells let go of it. The cells it lands on must be free;
+    // otherwise, or if it would not move, nothing changes and false is returned.
+    public boolean movePiece(int index, int[] to) {
+        KlotskiPiece piece = pieces[index];
+        if (to[0] == piece.position[0] && to[1] == piece.position[1]) {
+            return false;
+        }
+        if (to[0] < 0 || to[0] + piece.height > BOARD_HEIGHT || to[1] < 0 || to[1] + piece.width > BOARD_WIDTH) {
+            return false;
+        }
+        if (!isFree(index, to)) {
+            return false;
+        }
+        place(index, to);
+        return true;
+    }
+
     public boolean isLegalMove(int[] from, int[] to) {
         // Check if positions are within bounds
         if (from[0] < 0 || from[0] >= BOARD_HEIGHT || from[1] < 0 || from[1] >= BOARD_WIDTH ||
@@ -159,15 +204,35 @@ public class KlotskiGame {
         }
 
         // Check for collisions with other pieces
-        for (KlotskiPiece other : pieces) {
-            if (other != piece && overlaps(other, newPos, piece.width, piece.height)) {
-                return false;
+        return isFree(grid[from[0] * BOARD_WIDTH + from[1]], newPos);
+    }
+
+    // Whether the piece at the index could sit at the in-bounds position
+    // without covering another piece
+    private boolean isFree(int index, int[] position) {
+        KlotskiPiece piece = pieces[index];
+        for (int row = position[0]; row < position[0] + piece.height; row++) {
+            for (int col = position[1]; col < position[1] + piece.width; col++) {
+                int occupant = grid[row * BOARD_WIDTH + col];
+                if (occupant != EMPTY_CELL && occupant != index) {
+                    return false;
+                }
             }
         }
-
         return true;
     }
 
+    // Moves a piece and keeps the grid, hash and move count in step
+    private void place(int index, int[] position) {
+        KlotskiPiece piece = pieces[index];
+        fillGrid(piece, EMPTY_CELL);
+        positionHash ^= zobristKey(piece);
+        piece.setPosition(position);
+        positionHash ^= zobristKey(piece);
+        fillGrid(piece, (byte) index);
+        moveCount++;
+    }
+
     public boolean isTerminal() {
         KlotskiPiece piece = getPieceAtPrecise(new int[] {3, 1});
         if (piece != null && (piece.id == 0 || "Cao Cao".equals(piece.name))) {
@@ -184,109 +249,172 @@ public class KlotskiGame {
     }
 
     private KlotskiPiece getPieceAt(int[] position) {
-        for (KlotskiPiece piece : pieces) {
-            if (position[0] >= piece.position[0] &&
-                position[0] < piece.position[0] + piece.height &&
-                position[1] >= piece.position[1] &&
-                position[1] < piece.position[1] + piece.width) {
-                return piece;
-            }
+        if (position[0] < 0 || position[0] >= BOARD_HEIGHT || position[1] < 0 || position[1] >= BOARD_WIDTH) {
+            return null;
         }
-        return null;
+        int index = grid[position[0] * BOARD_WIDTH + position[1]];
+        return index == EMPTY_CELL ? null : pieces[index];
     }
 
     private KlotskiPiece getPieceAtPrecise(int[] position) {
-        for (KlotskiPiece piece : pieces) {
-            if (position[0] == piece.position[0] &&
-                position[1] == piece.position[1]) {
-                return piece;
-            }
+        KlotskiPiece piece = getPieceAt(position);
+        if (piece != null && piece.position[0] == position[0] && piece.position[1] == position[1]) {
+            return piece;
         }
         return null;
     }
 
-    public List<int[]> getLegalMovesForPiece(int[] position) {
-        List<int[]> legalMoves = new ArrayList<>();
-        KlotskiPiece piece = getPieceAt(position);
-        if (piece == null) return legalMoves;
+    // Recomputes the grid and the position hash from the pieces
+    private void rebuildGrid() {
+        Arrays.fill(grid, EMPTY_CELL);
+        positionHash = 0L;
+        for (int i = 0; i < pieces.length; i++) {
+            fillGrid(pieces[i], (byte) i);
+            positionHash ^= zobristKey(pieces[i]);
+        }
+    }
+
+    private static long zobristKey(KlotskiPiece piece) {
+        int row = piece.position[0];
+        int col = piece.position[1];
+        if (row < 0 || row >= BOARD_HEIGHT || col < 0 || col >= BOARD_WIDTH) {
+            return 0L;
+        }
+        return ZOBRIST_KEYS[PackedBoard.topLeftCode(piece.width, piece.height)][row * BOARD_WIDTH + col];
+    }
+
+    // 64-bit Zobrist hash of the position, updated in O(1) per move. Positions
+    // that differ only by which of two identical pieces sits where hash equal.
+    public long positionHash() {
+        return positionHash;
+    }
 
-        int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
-        for (int[] dir : directions) {
-            int[] newPos = {position[0] + dir[0], position[1] + dir[1]};
-            if (isLegalMove(position, newPos)) {
-                legalMoves.add(newPos);
+    // Writes the value into every on-board cell the piece covers
+    private void fillGrid(KlotskiPiece piece, byte value) {
+        int bottom = Math.min(piece.position[0] + piece.height, BOARD_HEIGHT);
+        int right = Math.min(piece.position[1] + piece.width, BOARD_WIDTH);
+        for (int row = Math.max(piece.position[0], 0); row < bottom; row++) {
+            for (int col = Math.max(piece.position[1], 0); col < right; col++) {
+                grid[row * BOARD_WIDTH + col] = value;
             }
         }
-        return legalMoves;
     }
 
-    public List<int[][]> getLegalMovesByDirection(int[] direction) {
-        List<int[][]> legalMoves = new ArrayList<>();
+    // Bit set (bit = cell index) of the empty cells
+    private int emptyMask() {
+        int mask = 0;
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] == EMPTY_CELL) {
+                mask |= 1 << cell;
+            }
+        }
+        return mask;
+    }
+
+    // Packed legal moves (see PackedBoard.move) are written into a caller-owned
+    // array of at least PackedBoard.MAX_MOVES entries and the count is returned.
+    // Moves come piece by piece in array order, each trying up, down, left, right.
+    public int legalMoves(int[] moves) {
+        return legalMoves(-1, -1, moves);
+    }
+
+    public int legalMoves(MoveBuffer buffer) {
+        buffer.setSize(legalMoves(buffer.array()));
+        return buffer.size();
+    }
+
+    // Moves of the piece covering the given cell
+    public int legalMovesForPiece(int[] position, int[] moves) {
+        KlotskiPiece piece = getPieceAt(position);
+        if (piece == null) return 0;
+        return legalMoves(piece.position[0] * BOARD_WIDTH + piece.position[1], -1, moves);
+    }
+
+    // Moves one step in the given {row, col} direction
+    public int legalMovesByDirection(int[] direction, int[] moves) {
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            if (DIRECTIONS[d][0] == direction[0] && DIRECTIONS[d][1] == direction[1]) {
+                return legalMoves(-1, d, moves);
+            }
+        }
+        return 0;
+    }
 
-        // Iterate through all pieces
+    // A negative cell or direction means any
+    private int legalMoves(int onlyCell, int onlyDirection, int[] moves) {
+        int empty = emptyMask();
+        int count = 0;
         for (KlotskiPiece piece : pieces) {
-            int[] currentPosition = piece.getPosition();
-            
-            // Check each direction for legal moves
-            int[] newPosition = {
-                currentPosition[0] + direction[0],
-                currentPosition[1] + direction[1]
-            };
-
-            // If the move is legal, add it to the list
-            if (isLegalMove(currentPosition, newPosition)) {
-                legalMoves.add(new int[][]{currentPosition, newPosition});
+            int cell = piece.position[0] * BOARD_WIDTH + piece.position[1];
+            if (onlyCell >= 0 && cell != onlyCell) continue;
+            int code = PackedBoard.topLeftCode(piece.width, piece.height);
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                if (onlyDirection >= 0 && d != onlyDirection) continue;
+                int move = MoveGenerator.move(code, cell, d, empty);
+                if (move >= 0) {
+                    moves[count++] = move;
+                }
             }
-            
         }
+        return count;
+    }
 
+    public List<int[]> getLegalMovesForPiece(int[] position) {
+        int[] moves = new int[PackedBoard.MAX_MOVES];
+        int count = legalMovesForPiece(position, moves);
+        List<int[]> legalMoves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Offsets apply to the given cell, which need not be the top-left one
+            int from = PackedBoard.moveFrom(moves[i]);
+            int to = PackedBoard.moveTo(moves[i]);
+            legalMoves.add(new int[]{
+                position[0] + to / BOARD_WIDTH - from / BOARD_WIDTH,
+                position[1] + to % BOARD_WIDTH - from % BOARD_WIDTH
+            });
+        }
         return legalMoves;
     }
 
+    public List<int[][]> getLegalMovesByDirection(int[] direction) {
+        int[] moves = new int[PackedBoard.MAX_MOVES];
+        return toCoordinates(moves, legalMovesByDirection(direction, moves));
+    }
+
     public List<int[][]> getLegalMoves() {
-        List<int[][]> legalMoves = new ArrayList<>();
+        int[] moves = new int[PackedBoard.MAX_MOVES];
+        return toCoordinates(moves, legalMoves(moves));
+    }
 
-        // Iterate through all pieces
-        for (KlotskiPiece piece : pieces) {
-            int[] currentPosition = piece.getPosition();
-
-            int[][] directions = new int[][] {
-                {-1, 0}, // Up
-                {1, 0},  // Down
-                {0, -1}, // Left
-                {0, 1}   // Right
-            };
-            
-            for (int[] direction : directions) {
-                // Check each direction for legal moves
-                int[] newPosition = {
-                    currentPosition[0] + direction[0],
-                    currentPosition[1] + direction[1]
-                };
-
-                // If the move is legal, add it to the list
-                if (isLegalMove(currentPosition, newPosition)) {
-                    legalMoves.add(new int[][]{currentPosition, newPosition});
-                }
-            }   
+    private static List<int[][]> toCoordinates(int[] moves, int count) {
+        List<int[][]> legalMoves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = PackedBoard.moveFrom(moves[i]);
+            int to = PackedBoard.moveTo(moves[i]);
+            legalMoves.add(new int[][]{
+                {from / BOARD_WIDTH, from % BOARD_WIDTH},
+                {to / BOARD_WIDTH, to % BOARD_WIDTH}
+            });
         }
-
         return legalMoves;
     }
 
     public void randomShuffle(long seed) {
         Random random = new Random(seed);
+        MoveBuffer legalMoves = new MoveBuffer();
+        int[] from = new int[2];
+        int[] to = new int[2];
 
         for (int i = 0; i < 100; i++) {
-            List<int[][]> legalMoves = getLegalMoves();
-            if (legalMoves.isEmpty()) {
+            if (legalMoves(legalMoves) == 0) {
                 break; // No legal moves available
             }
 
             // Pick a random move from the list of legal moves
-            int[][] move = legalMoves.get(random.nextInt(legalMoves.size()));
-            int[] from = move[0];
-            int[] to = move[1];
+            int move = random.nextInt(legalMoves.size());
+            from[0] = legalMoves.fromRow(move);
+            from[1] = legalMoves.fromCol(move);
+            to[0] = legalMoves.toRow(move);
+            to[1] = legalMoves.toCol(move);
 
             // Apply the selected move
             applyAction(from, to);
@@ -342,6 +470,21 @@ public class KlotskiGame {
         return sb.toString();
     }
 
+    // Immutable packed copy of the current position
+    public KlotskiPosition snapshot() {
+        return new KlotskiPosition(PackedBoard.encode(pieces));
+    }
+
+    // Moves the existing pieces to the snapshot's position. Pieces already on
+    // a matching square stay put; identical pieces may otherwise trade places.
+    public void restore(KlotskiPosition position) {
+        KlotskiPiece[] placed = PackedBoard.decode(position.toLong(), pieces);
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i].setPosition(placed[i].position);
+        }
+        rebuildGrid();
+    }
+
     public KlotskiPiece[] getPieces() {
         return pieces.clone();
     }
@@ -369,6 +512,7 @@ public class KlotskiGame {
                 newPieces[i].getPosition()
             );
         }
+        rebuildGrid();
     }
     
     public void setPieces(List<KlotskiPiece> newPieces) {
@@ -391,6 +535,7 @@ public class KlotskiGame {
                 newPiece.getPosition()
             );
         }
+        rebuildGrid();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,48 @@
+package io.github.jimzhouzzy.klotski;
+
+// Admissible heuristics for the classic goal (Cao Cao's top-left at row 3, col 1).
+// Both are symmetric under mirroring, so they agree with PackedBoard.canonicalKey.
+public final class KlotskiHeuristics {
+    private static final int GOAL_ROW = PackedBoard.GOAL_CELL / PackedBoard.WIDTH;
+    private static final int GOAL_COL = PackedBoard.GOAL_CELL % PackedBoard.WIDTH;
+
+    // Cells Cao Cao covers once the puzzle is solved
+    private static final int[] GOAL_AREA = {
+        PackedBoard.GOAL_CELL, PackedBoard.GOAL_CELL + 1,
+        PackedBoard.GOAL_CELL + PackedBoard.WIDTH, PackedBoard.GOAL_CELL + PackedBoard.WIDTH + 1
+    };
+
+    // Every move slides one piece by one cell, so Cao Cao needs at least his
+    // Manhattan distance to the goal
+    public static final Heuristic MANHATTAN = KlotskiHeuristics::manhattan;
+
+    // Manhattan distance plus one move for every other piece still inside the
+    // goal area: each has to move out at least once, and those are moves Cao
+    // Cao does not make
+    public static final Heuristic BLOCKING = KlotskiHeuristics::blocking;
+
+    private KlotskiHeuristics() {
+    }
+
+    // The largest of several admissible estimates is still admissible
+    public static Heuristic max(Heuristic first, Heuristic second) {
+        return board -> Math.max(first.estimate(board), second.estimate(board));
+    }
+
+    public static int manhattan(long board) {
+        int cell = PackedBoard.caoCaoCell(board);
+        return Math.abs(cell / PackedBoard.WIDTH - GOAL_ROW) + Math.abs(cell % PackedBoard.WIDTH - GOAL_COL);
+    }
+
+    public static int blocking(long board) {
+        int caoCao = PackedBoard.caoCaoCell(board);
+        int blockers = 0; // Bit set of the blocking pieces' top-left cells
+        for (int cell : GOAL_AREA) {
+            int topLeft = PackedBoard.topLeftOf(board, cell);
+            if (topLeft >= 0 && topLeft != caoCao) {
+                blockers |= 1 << topLeft;
+            }
+        }
+        return manhattan(board) + Integer.bitCount(blockers);
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.jimzhouzzy.klotski;
+
+// Immutable snapshot of a board, wrapping its PackedBoard long. Cheap to
+// pass between threads, store or send, and usable as a map key. Pieces of
+// the same shape are interchangeable here: restoring a position onto a game
+// keeps ids where pieces already sit and fills the rest in cell order.
+public final class KlotskiPosition {
+    private final long board;
+
+    public KlotskiPosition(long board) {
+        this.board = board;
+    }
+
+    public static KlotskiPosition of(KlotskiGame game) {
+        return game.snapshot();
+    }
+
+    public long toLong() {
+        return board;
+    }
+
+    public boolean isSolved() {
+        return PackedBoard.isSolved(board);
+    }
+
+    // The position after a packed move; the move is not checked for legality
+    public KlotskiPosition apply(int move) {
+        return new KlotskiPosition(PackedBoard.applyMove(board, move));
+    }
+
+    // Writes the packed legal moves and returns how many there are
+    public int legalMoves(int[] moves) {
+        return MoveGenerator.generate(board, moves);
+    }
+
+    // The same key for a position and its mirror image
+    public long canonicalKey() {
+        return PackedBoard.canonicalKey(board);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof KlotskiPosition && ((KlotskiPosition) o).board == board;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(board);
+    }
+
+    @Override
+    public String toString() {
+        return PackedBoard.toString(board);
+    }
+}
@@ -1,215 +1,183 @@
 package io.github.jimzhouzzy.klotski;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class KlotskiSolver {
-    private static class BoardState {
-        final KlotskiGame.KlotskiPiece[] pieces;
-        final String move;
-        final BoardState parent;
-        final String state;
-
-        BoardState(KlotskiGame.KlotskiPiece[] pieces, String move, BoardState parent, String state) {
-            this.pieces = deepCopyPieces(pieces);
-            this.move = move;
-            this.parent = parent;
-            this.state = state;
-        }
-
-        private KlotskiGame.KlotskiPiece[] deepCopyPieces(KlotskiGame.KlotskiPiece[] original) {
-            KlotskiGame.KlotskiPiece[] copy = new KlotskiGame.KlotskiPiece[original.length];
-            for (int i = 0; i < original.length; i++) {
-                copy[i] = new KlotskiGame.KlotskiPiece(
-                        original[i].id,
-                        original[i].name,
-                        original[i].abbreviation,
-                        original[i].width,
-                        original[i].height,
-                        original[i].getPosition()
-                        );
-            }
-            return copy;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) return true;
-            if (!(obj instanceof BoardState)) return false;
-            BoardState other = (BoardState) obj;
-            if (state.equals(other.state)) {
-                return true;
-            }
-            return false;
-        }
+    // The classic layout reaches about 25k distinct positions
+    public static final int DEFAULT_EXPECTED_STATES = 1 << 15;
+    // Transposition table budget for the bounded-memory IDA* engine
+    public static final int DEFAULT_TABLE_MEGABYTES = 64;
+    // Positions kept in the solution cache, each with the rest of its path
+    public static final int DEFAULT_CACHE_ENTRIES = 1 << 14;
+
+    // Filled with every solved path, see cachedSolution
+    private static final SolutionCache solutionCache = new SolutionCache(DEFAULT_CACHE_ENTRIES);
+
+    // Returns an optimal solution. BFS reaches goals in order of distance,
+    // so the search stops as soon as the first solved state is generated.
+    public static List<String> solve(KlotskiGame initialGame) {
+        return solve(initialGame, DEFAULT_EXPECTED_STATES);
+    }
 
-        @Override
-        public int hashCode() {
-            int result = 1;
-            for (KlotskiGame.KlotskiPiece piece : pieces) {
-                result = 31 * result + piece.position[0];
-                result = 31 * result + piece.position[1];
-            }
-            return result;
-        }
+    public static List<String> solve(KlotskiGame initialGame, int expectedStates) {
+        return solve(initialGame, new BfsSolver(expectedStates, true));
     }
 
-    public static List<String> solve(KlotskiGame initialGame) {
-        long startTime = System.currentTimeMillis();
-        int statesExamined = 0;
-        int solutionsFound = 0;
-        int minMoves = Integer.MAX_VALUE;
-        List<String> bestSolution = null;
+    // Explores the whole reachable component and reports every solved state
+    // it contains. Use this for analytics, e.g. counting distinct solutions.
+    public static List<String> solveExhaustive(KlotskiGame initialGame) {
+        return solveExhaustive(initialGame, DEFAULT_EXPECTED_STATES);
+    }
 
-        // Initialize BFS queue with starting state
-        Deque<BoardState> queue = new ArrayDeque<>();
-        Set<String> visited = new HashSet<>();
-        Map<BoardState, BoardState> parentMap = new HashMap<>();
+    public static List<String> solveExhaustive(KlotskiGame initialGame, int expectedStates) {
+        return solve(initialGame, new BfsSolver(expectedStates, false));
+    }
 
-        BoardState initialState = new BoardState(initialGame.getPieces(), null, null, initialGame.toString());
-        queue.add(initialState);
-        visited.add(initialState.state);
+    // Answers from the precomputed distance table for the game's piece set.
+    // The table is mapped from the config directory (written there on first
+    // use); if that fails it is built in memory instead.
+    public static List<String> solveFromTablebase(KlotskiGame initialGame) {
+        return describe(solveMovesFromTablebase(initialGame), initialGame);
+    }
 
-        while (!queue.isEmpty()) {
-            BoardState current = queue.poll();
-            statesExamined++;
+    public static List<Move> solveMovesFromTablebase(KlotskiGame initialGame) {
+        DistanceTable table = MappedTablebase.forGame(initialGame);
+        return solveMoves(initialGame, table != null ? table : Tablebase.forGame(initialGame));
+    }
 
-            // Check if current state is a solution
-            if (isSolved(current)) {
-                solutionsFound++;
-                List<String> solution = reconstructSolution(current);
-                if (solution.size() < minMoves) {
-                    minMoves = solution.size();
-                    bestSolution = solution;
-                }
-                continue; // Continue searching for shorter solutions
-            }
+    // Solves with any engine, e.g. new AStarSolver(KlotskiHeuristics.BLOCKING)
+    public static List<String> solve(KlotskiGame initialGame, SolverEngine engine) {
+        return describe(solveMoves(initialGame, engine), initialGame);
+    }
 
-            // Generate all possible next moves
-            for (BoardState nextState : generateNextStates(current)) {
-                if (!visited.contains(nextState.state)) {
-                    visited.add(nextState.state);
-                    //System.out.println(visited.size());
-                    parentMap.put(nextState, current);
-                    queue.add(nextState);
-                } else {
-                    //System.out.println("duplicated");
-                }
-            }
+    // Like solve, but returns the moves as Move values instead of text
+    public static List<Move> solveMoves(KlotskiGame initialGame, SolverEngine engine) {
+        long board = PackedBoard.encode(initialGame);
+        SolveResult result = engine.solve(board);
+        if (result.isSolved()) {
+            solutionCache.putPath(board, result.getMoves());
         }
 
-        long endTime = System.currentTimeMillis();
-        System.out.printf("Finished in %.3f seconds\n", (endTime - startTime) / 1000.0);
-        System.out.printf("  %d unique solutions\n", solutionsFound);
-        System.out.printf("  %d moves in shortest solution\n", minMoves);
-        System.out.printf("  %d board configurations examined\n", statesExamined);
-        System.out.printf("  %d unique board states visited\n", visited.size());
+        System.out.printf("Finished in %.3f seconds (%s)\n", result.getElapsedNanos() / 1e9, engine.getName());
+        System.out.printf("  %d unique solutions\n", result.getSolutionsFound());
+        System.out.printf("  %d moves in shortest solution\n",
+                result.isSolved() ? result.getMoves().length : Integer.MAX_VALUE);
+        System.out.printf("  %d board configurations examined\n", result.getNodesExpanded());
+        System.out.printf("  %d unique board states visited\n", result.getStatesVisited());
 
-        return bestSolution;
+        return result.isSolved() ? toMoves(result.getMoves(), initialGame) : null;
     }
 
-    private static boolean isSolved(BoardState state) {
-        // Check if Cao Cao (id=0) is at the winning position (row=3, col=1)
-        for (KlotskiGame.KlotskiPiece piece : state.pieces) {
-            if (piece.id == 0) {
-                return piece.position[0] == 3 && piece.position[1] == 1;
-            }
-        }
-        return false;
+    // The rest of an earlier solution passing through the game's position,
+    // from this session's cache or else the moves stored by earlier sessions,
+    // or null if neither knows it. Never searches.
+    public static List<String> cachedSolution(KlotskiGame game) {
+        return describe(cachedMoves(game), game);
     }
 
-    private static List<BoardState> generateNextStates(BoardState state) {
-        List<BoardState> nextStates = new ArrayList<>();
-
-        // Create a temporary game to check moves
-        KlotskiGame tempGame = new KlotskiGame();
-        setGameState(tempGame, state);
-
-        // Try moving each piece in all possible directions
-        //System.out.println(tempGame);
-        for (KlotskiGame.KlotskiPiece piece : state.pieces) {
-            //System.out.print(piece);
-            int[] position = {piece.position[0], piece.position[1]};
-            List<int[]> legalMoves = tempGame.getLegalMovesForPiece(position);
-            for (int i=0; i < legalMoves.size(); i ++) {
-                //System.out.print(" ");
-                for (int j = 0; j < legalMoves.get(i).length; j ++){
-                    //System.out.printf("%d", legalMoves.get(i)[j]);
-                }
+    public static List<Move> cachedMoves(KlotskiGame game) {
+        long board = PackedBoard.encode(game);
+        int[] moves = solutionCache.get(board);
+        if (moves == null) {
+            moves = SolutionStore.getInstance().solution(board);
+            if (moves != null) {
+                solutionCache.putPath(board, moves);
             }
-            //System.out.print("\n");
-
-            for (int[] move : legalMoves) {
-                // Create new state with this move
-                KlotskiGame.KlotskiPiece[] newPieces = state.deepCopyPieces(state.pieces);
-                for (KlotskiGame.KlotskiPiece p : newPieces) {
-                    if (p.id == piece.id) {
-                        p.setPosition(new int[]{move[0], move[1]});
-                        break;
-                    }
-                }
+        }
+        return moves != null ? toMoves(moves, game) : null;
+    }
 
-                String moveDesc = String.format("Move %s from (%d,%d) to (%d,%d)",
-                        piece.name, position[0], position[1], move[0], move[1]);
+    // Remembers a solution of the game's position for later sessions. Only
+    // the game calls this; solving alone never writes to the config directory.
+    public static void storeSolution(KlotskiGame game, List<Move> solution) {
+        if (solution == null) {
+            return;
+        }
+        int[] moves = new int[solution.size()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = solution.get(i).toBoardMove();
+        }
+        SolutionStore.getInstance().putPath(PackedBoard.encode(game), moves);
+    }
 
-                char[][] board = new char[KlotskiGame.BOARD_HEIGHT][KlotskiGame.BOARD_WIDTH];
-                // Initialize empty board
-                for (int i = 0; i < KlotskiGame.BOARD_HEIGHT; i++) {
-                    for (int j = 0; j < KlotskiGame.BOARD_WIDTH; j++) {
-                        board[i][j] = '.';
-                    }
-                }
+    public static boolean hasCachedSolution(KlotskiGame game) {
+        long board = PackedBoard.encode(game);
+        return solutionCache.contains(board) || SolutionStore.getInstance().solution(board) != null;
+    }
 
-                // Place pieces on the board
-                for (KlotskiGame.KlotskiPiece newPiece : newPieces) {
-                    int[] pos = newPiece.getPosition();
-                    for (int i = 0; i < newPiece.height; i++) {
-                        for (int j = 0; j < newPiece.width; j++) {
-                            if (pos[0] + i < KlotskiGame.BOARD_HEIGHT && pos[1] + j < KlotskiGame.BOARD_WIDTH) {
-                                board[pos[0] + i][pos[1] + j] = newPiece.abbreviation;
-                            }
-                        }
-                    }
-                }
+    public static SolutionCache getSolutionCache() {
+        return solutionCache;
+    }
 
-                // Build the string representation
-                StringBuilder sb = new StringBuilder();
-                for (int i = 0; i < KlotskiGame.BOARD_HEIGHT; i++) {
-                    for (int j = 0; j < KlotskiGame.BOARD_WIDTH; j++) {
-                        sb.append(board[i][j]).append(' ');
-                    }
-                    sb.append('\n');
-                }
-                //System.out.print(sb.toString());
-                nextStates.add(new BoardState(newPieces, moveDesc, state, sb.toString()));
-            }
+    public static SolverEngine engineByName(String name) {
+        switch (name.toLowerCase()) {
+            case "bfs":
+                return new BfsSolver(DEFAULT_EXPECTED_STATES, true);
+            case "bfs-offheap":
+                return new BfsSolver(DEFAULT_EXPECTED_STATES, true, true);
+            case "parallel":
+                return new ParallelBfsSolver(DEFAULT_EXPECTED_STATES, true);
+            case "parallel-offheap":
+                return new ParallelBfsSolver(DEFAULT_EXPECTED_STATES, true, true, ForkJoinPool.commonPool());
+            case "external":
+                return new ExternalBfsSolver(ExternalBfsSolver.DEFAULT_RUN_SIZE, true);
+            case "astar":
+                return new AStarSolver(KlotskiHeuristics.BLOCKING);
+            case "idastar":
+                return new IdaStarSolver(KlotskiHeuristics.BLOCKING);
+            case "astar-pdb":
+                return new AStarSolver(patternHeuristic());
+            case "idastar-pdb":
+                return new IdaStarSolver(patternHeuristic());
+            case "idastar-tt":
+                return new IdaStarSolver(patternHeuristic(), DEFAULT_TABLE_MEGABYTES);
+            default:
+                throw new IllegalArgumentException("Unknown solver engine: " + name);
         }
+    }
 
-        return nextStates;
+    // Pattern database bounds, tightened further by the blocking-piece count
+    public static Heuristic patternHeuristic() {
+        return KlotskiHeuristics.max(PatternDatabase.getInstance(), KlotskiHeuristics.BLOCKING);
     }
 
-    private static void setGameState(KlotskiGame game, BoardState state) {
-        KlotskiGame.KlotskiPiece[] currentPieces = game.getPieces();
-        for (int i = 0; i < currentPieces.length; i++) {
-            currentPieces[i].setPosition(state.pieces[i].getPosition());
+    // The solver works on canonical boards, so the packed moves are replayed
+    // on a copy of the starting game to find the concrete piece each one slides
+    private static List<Move> toMoves(int[] moves, KlotskiGame initialGame) {
+        KlotskiGame replay = new KlotskiGame();
+        replay.setPieces(initialGame.getPieces());
+
+        List<Move> solution = new ArrayList<>(moves.length);
+        for (int move : moves) {
+            KlotskiGame.KlotskiPiece piece = PackedBoard.pieceForMove(replay.pieces, move);
+            if (piece == null) {
+                throw new IllegalStateException("No piece at cell " + PackedBoard.moveFrom(move));
+            }
+            Move step = Move.of(piece.id, PackedBoard.moveFrom(move), PackedBoard.moveTo(move));
+            solution.add(step);
+            replay.applyAction(step.getFrom(), step.getTo());
         }
+        return solution;
     }
 
-    private static List<String> reconstructSolution(BoardState state) {
-        List<String> solution = new ArrayList<>();
-        while (state != null && state.move != null) {
-            solution.add(0, state.move); // Add to beginning to reverse order
-            state = state.parent;
+    // Move descriptions are only built here, for printing and the text API
+    private static List<String> describe(List<Move> moves, KlotskiGame game) {
+        if (moves == null) {
+            return null;
+        }
+        List<String> solution = new ArrayList<>(moves.size());
+        for (Move move : moves) {
+            solution.add(move.describe(game));
         }
         return solution;
     }
 
+    public static void printSolution(List<Move> solution, KlotskiGame game) {
+        printSolution(describe(solution, game));
+    }
+
     public static void printSolution(List<String> solution) {
         if (solution == null) {
             System.out.println("No solution found!");
@@ -228,8 +196,11 @@ public class KlotskiSolver {
         System.out.println(game);
 
         System.out.println("\nSolving...");
-        List<String> solution = solve(game);
-        printSolution(solution);
+        // Optional first argument picks the engine: bfs (default), bfs-offheap, parallel,
+        // parallel-offheap, external, astar, idastar, astar-pdb, idastar-pdb or idastar-tt
+        SolverEngine engine = engineByName(args.length > 0 ? args[0] : "bfs");
+        List<Move> solution = solveMoves(game, engine);
+        printSolution(solution, game);
 
         // Optional: Replay the solution
         if (solution != null) {
@@ -237,25 +208,9 @@ public class KlotskiSolver {
             game.initialize();
             System.out.println(game);
             for (int i = 0; i < solution.size(); i++) {
-                System.out.printf("\n%d. %s\n", i + 1, solution.get(i));
-                // Parse and execute the move
-                String move = solution.get(i);
-                String[] parts = move.split(" ");
-                // Extract piece name (dynamic length)
-                int fromIndex = move.indexOf(" from ");
-                String pieceName = move.substring(5, fromIndex); // "Move " is 5 chars
-
-                // Extract "from" and "to" parts
-                String fromPart = move.substring(fromIndex + 6, move.indexOf(" to ")); // " from " is 6 chars
-                String toPart = move.substring(move.indexOf(" to ") + 4); // " to " is 4 chars
-
-                // Parse coordinates: "(row,col)" -> row, col
-                int fromRow = Integer.parseInt(fromPart.substring(1, fromPart.indexOf(',')));
-                int fromCol = Integer.parseInt(fromPart.substring(fromPart.indexOf(',') + 1, fromPart.length() - 1));
-                int toRow = Integer.parseInt(toPart.substring(1, toPart.indexOf(',')));
-                int toCol = Integer.parseInt(toPart.substring(toPart.indexOf(',') + 1, toPart.length() - 1));
-
-                game.applyAction(new int[]{fromRow, fromCol}, new int[]{toRow, toCol});
+                Move move = solution.get(i);
+                System.out.printf("\n%d. %s\n", i + 1, move.describe(game));
+                game.applyAction(move.getFrom(), move.getTo());
                 System.out.println(game);
                 try {
                     Thread.sleep(1000);
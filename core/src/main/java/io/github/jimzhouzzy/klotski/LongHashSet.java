@@ -0,0 +1,100 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.Arrays;
+
+// Open-addressing hash set of primitive longs (linear probing).
+// Lookups and inserts never allocate; the table only grows when it passes
+// the load factor, so size it from the expected number of entries.
+public class LongHashSet implements VisitedSet {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    // 0 marks a free slot, so the key 0 is tracked on the side
+    private boolean containsZero;
+
+    public LongHashSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    @Override
+    public boolean add(long key) {
+        if (key == 0L) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0L) {
+            if (keys[slot] == key) return false;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(long key) {
+        if (key == 0L) return containsZero;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0L) {
+            if (keys[slot] == key) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        containsZero = false;
+        size = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        allocate(newCapacity);
+        for (long key : oldKeys) {
+            if (key == 0L) continue;
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 2) / (double) LOAD_FACTOR);
+        if (needed > (1 << 30)) {
+            throw new IllegalArgumentException("Expected size too large: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    // Murmur3 finalizer, spreads packed boards whose low bits barely differ
+    static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.Arrays;
+
+// Open-addressing map from primitive long keys to int values (linear probing),
+// laid out as two parallel arrays so entries cost 12 bytes plus slack.
+public class LongIntHashMap {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    // 0 marks a free slot, so the key 0 is tracked on the side
+    private boolean containsZero;
+    private int zeroValue;
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(LongHashSet.tableSizeFor(expectedSize));
+    }
+
+    public int get(long key, int defaultValue) {
+        if (key == 0L) return containsZero ? zeroValue : defaultValue;
+        int slot = LongHashSet.mix(key) & mask;
+        while (keys[slot] != 0L) {
+            if (keys[slot] == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0L) return containsZero;
+        int slot = LongHashSet.mix(key) & mask;
+        while (keys[slot] != 0L) {
+            if (keys[slot] == key) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public void put(long key, int value) {
+        insert(key, value, true);
+    }
+
+    // Returns false (and keeps the old value) if the key is already present
+    public boolean putIfAbsent(long key, int value) {
+        return insert(key, value, false);
+    }
+
+    // Returns false if the key is not present
+    public boolean remove(long key) {
+        if (key == 0L) {
+            if (!containsZero) return false;
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int slot = LongHashSet.mix(key) & mask;
+        while (keys[slot] != 0L) {
+            if (keys[slot] == key) {
+                closeGap(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        containsZero = false;
+        size = 0;
+    }
+
+    private boolean insert(long key, int value, boolean overwrite) {
+        if (key == 0L) {
+            if (containsZero) {
+                if (overwrite) zeroValue = value;
+                return false;
+            }
+            containsZero = true;
+            zeroValue = value;
+            size++;
+            return true;
+        }
+        int slot = LongHashSet.mix(key) & mask;
+        while (keys[slot] != 0L) {
+            if (keys[slot] == key) {
+                if (overwrite) values[slot] = value;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    // Linear probing has no tombstones: later entries of the probe run are
+    // shifted back into the freed slot unless that would put them before
+    // their home slot
+    private void closeGap(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0L) break;
+            int home = LongHashSet.mix(key) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0L;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == 0L) continue;
+            int slot = LongHashSet.mix(key) & mask;
+            while (keys[slot] != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Tablebase distances stored on disk, one byte per board, at the board's
+// PositionRanker rank. The file lives in the config directory and is mapped
+// read-only, so opening it costs nothing, every process on the host shares
+// the same page-cache copy and a lookup is a rank plus one byte read.
+public class MappedTablebase implements DistanceTable {
+    private static final int MAGIC = 0x4B54424C; // "KTBL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int NO_DISTANCE = 0xFF;
+
+    // One table per piece set, keyed by Tablebase.pieceCounts
+    private static final Map<Integer, MappedTablebase> instances = new HashMap<>();
+
+    private final PositionRanker ranker;
+    private final MappedByteBuffer distances;
+
+    private MappedTablebase(PositionRanker ranker, MappedByteBuffer distances) {
+        this.ranker = ranker;
+        this.distances = distances;
+    }
+
+    // Maps the table for the board's piece set, writing the file first if it
+    // is missing or outdated
+    public static synchronized MappedTablebase forBoard(long board) {
+        int counts = Tablebase.pieceCounts(board);
+        MappedTablebase tablebase = instances.get(counts);
+        if (tablebase == null) {
+            PositionRanker ranker = PositionRanker.forBoard(board);
+            File file = fileFor(counts);
+            MappedByteBuffer distances = map(file, counts, ranker);
+            if (distances == null) {
+                save(file, counts, ranker, Tablebase.forBoard(board));
+                distances = map(file, counts, ranker);
+            }
+            if (distances == null) {
+                return null;
+            }
+            tablebase = new MappedTablebase(ranker, distances);
+            instances.put(counts, tablebase);
+        }
+        return tablebase;
+    }
+
+    public static MappedTablebase forGame(KlotskiGame game) {
+        return forBoard(PackedBoard.encode(game));
+    }
+
+    public static File fileFor(int pieceCounts) {
+        return new File(new ConfigPathHelper().getConfigFilePath("Klotski",
+                String.format("tablebase-%08x.db", pieceCounts)));
+    }
+
+    @Override
+    public int distance(long board) {
+        int distance = distances.get(HEADER_SIZE + (int) ranker.rank(board)) & 0xFF;
+        return distance == NO_DISTANCE ? UNREACHABLE : distance;
+    }
+
+    @Override
+    public long size() {
+        return ranker.size();
+    }
+
+    @Override
+    public String getName() {
+        return "Tablebase (mapped)";
+    }
+
+    private static MappedByteBuffer map(File file, int counts, PositionRanker ranker) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_SIZE + ranker.size()) {
+                System.err.println("Ignoring outdated tablebase: " + file);
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(8) != counts || buffer.getInt(12) != ranker.size()) {
+                System.err.println("Ignoring outdated tablebase: " + file);
+                return null;
+            }
+            return buffer;
+        } catch (IOException e) {
+            System.err.println("Failed to map tablebase: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static void save(File file, int counts, PositionRanker ranker, DistanceTable source) {
+        if (ranker.size() > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Too many positions for a mapped tablebase: " + ranker.size());
+        }
+        try {
+            AtomicFile.replace(file, temp -> {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(counts);
+                    out.writeInt((int) ranker.size());
+                    for (long rank = 0; rank < ranker.size(); rank++) {
+                        int distance = source.distance(ranker.unrank(rank));
+                        if (distance >= NO_DISTANCE) {
+                            throw new IllegalArgumentException("Distance does not fit in a byte: " + distance);
+                        }
+                        out.write(distance == UNREACHABLE ? NO_DISTANCE : distance);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to save tablebase: " + e.getMessage());
+        }
+    }
+
+    // Writes the table for the classic layout offline
+    public static void main(String[] args) {
+        long startTime = System.nanoTime();
+        KlotskiGame game = new KlotskiGame();
+        MappedTablebase tablebase = forGame(game);
+        if (tablebase == null) {
+            return;
+        }
+        System.out.printf("Opened in %.3f seconds: %s\n", (System.nanoTime() - startTime) / 1e9,
+                fileFor(Tablebase.pieceCounts(PackedBoard.encode(game))));
+        System.out.printf("  %d positions\n", tablebase.size());
+        System.out.printf("  %d moves from the starting layout\n", tablebase.distance(game));
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.jimzhouzzy.klotski;
+
+// One step of a solution: which piece slides, and from and to which
+// top-left cell. Packed into an int as pieceId << 10 | from << 5 | to, so the
+// low bits are the solver's own packed move (PackedBoard.move). Text is only
+// produced by describe, for printing.
+public final class Move {
+    private static final int CELL_BITS = 5;
+    private static final int CELL_MASK = (1 << CELL_BITS) - 1;
+    private static final int MOVE_BITS = 2 * CELL_BITS;
+
+    private final int packed;
+
+    private Move(int packed) {
+        this.packed = packed;
+    }
+
+    public static Move of(int pieceId, int fromCell, int toCell) {
+        return new Move(pack(pieceId, fromCell, toCell));
+    }
+
+    public static Move fromPacked(int packed) {
+        return new Move(packed);
+    }
+
+    public static int pack(int pieceId, int fromCell, int toCell) {
+        return pieceId << MOVE_BITS | fromCell << CELL_BITS | toCell;
+    }
+
+    public int toPacked() {
+        return packed;
+    }
+
+    // The same move without the piece, as the solvers pack it
+    public int toBoardMove() {
+        return packed & ((1 << MOVE_BITS) - 1);
+    }
+
+    public int getPieceId() {
+        return packed >>> MOVE_BITS;
+    }
+
+    public int getFromCell() {
+        return (packed >>> CELL_BITS) & CELL_MASK;
+    }
+
+    public int getToCell() {
+        return packed & CELL_MASK;
+    }
+
+    public int getFromRow() {
+        return getFromCell() / KlotskiGame.BOARD_WIDTH;
+    }
+
+    public int getFromCol() {
+        return getFromCell() % KlotskiGame.BOARD_WIDTH;
+    }
+
+    public int getToRow() {
+        return getToCell() / KlotskiGame.BOARD_WIDTH;
+    }
+
+    public int getToCol() {
+        return getToCell() % KlotskiGame.BOARD_WIDTH;
+    }
+
+    // {row, col} arrays in the form KlotskiGame.applyAction takes
+    public int[] getFrom() {
+        return new int[]{getFromRow(), getFromCol()};
+    }
+
+    public int[] getTo() {
+        return new int[]{getToRow(), getToCol()};
+    }
+
+    // "Move <piece name> from (row,col) to (row,col)", naming the piece from the game
+    public String describe(KlotskiGame game) {
+        return String.format("Move %s from (%d,%d) to (%d,%d)", game.getPiece(getPieceId()).name,
+                getFromRow(), getFromCol(), getToRow(), getToCol());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Move && ((Move) o).packed == packed;
+    }
+
+    @Override
+    public int hashCode() {
+        return packed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Move piece %d from (%d,%d) to (%d,%d)",
+                getPieceId(), getFromRow(), getFromCol(), getToRow(), getToCol());
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.jimzhouzzy.klotski;
+
+// Caller-owned list of packed moves (see PackedBoard.move), refilled in
+// place by KlotskiGame.legalMoves so enumerating moves allocates nothing.
+public class MoveBuffer {
+    private final int[] moves = new int[PackedBoard.MAX_MOVES];
+    private int size;
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return moves[index];
+    }
+
+    // Backing array, valid up to size(); lets the game fill the buffer directly
+    int[] array() {
+        return moves;
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    public int fromRow(int index) {
+        return PackedBoard.moveFrom(get(index)) / PackedBoard.WIDTH;
+    }
+
+    public int fromCol(int index) {
+        return PackedBoard.moveFrom(get(index)) % PackedBoard.WIDTH;
+    }
+
+    public int toRow(int index) {
+        return PackedBoard.moveTo(get(index)) / PackedBoard.WIDTH;
+    }
+
+    public int toCol(int index) {
+        return PackedBoard.moveTo(get(index)) % PackedBoard.WIDTH;
+    }
+}
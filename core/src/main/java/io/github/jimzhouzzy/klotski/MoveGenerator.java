@@ -0,0 +1,142 @@
+package io.github.jimzhouzzy.klotski;
+
+// Legal moves of a packed board, found from the empty cells: every move
+// slides a piece into at least one of them, so only the pieces next to an
+// empty cell are ever looked at. What a move needs and does is precomputed
+// per (top-left code, top-left cell, direction): the cells that must be
+// empty and the XOR that turns the board into its successor. Nothing is
+// allocated per call.
+public final class MoveGenerator {
+    private static final int CELLS = PackedBoard.CELLS;
+    private static final int DIRECTIONS = 4;
+    private static final int[] DIRECTION_ROWS = {-1, 1, 0, 0};
+    private static final int[] DIRECTION_COLS = {0, 0, -1, 1};
+
+    // Indexed by (code * CELLS + cell) * DIRECTIONS + direction.
+    // REQUIRED_EMPTY is 0 where the piece would leave the board.
+    private static final int[] REQUIRED_EMPTY = new int[8 * CELLS * DIRECTIONS];
+    private static final long[] DELTAS = new long[8 * CELLS * DIRECTIONS];
+    private static final int[] MOVES = new int[8 * CELLS * DIRECTIONS];
+
+    // The cell a piece slides from to enter the given cell in the given
+    // direction, or -1 at the edge. Indexed by cell * DIRECTIONS + direction.
+    private static final int[] SOURCES = new int[CELLS * DIRECTIONS];
+
+    static {
+        for (int cell = 0; cell < CELLS; cell++) {
+            int row = cell / PackedBoard.WIDTH;
+            int col = cell % PackedBoard.WIDTH;
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int sourceRow = row - DIRECTION_ROWS[d];
+                int sourceCol = col - DIRECTION_COLS[d];
+                SOURCES[cell * DIRECTIONS + d] = sourceRow < 0 || sourceRow >= PackedBoard.HEIGHT
+                        || sourceCol < 0 || sourceCol >= PackedBoard.WIDTH
+                        ? -1 : sourceRow * PackedBoard.WIDTH + sourceCol;
+            }
+        }
+
+        int[] codes = {PackedBoard.SOLDIER, PackedBoard.GENERAL_TOP, PackedBoard.GUAN_YU_LEFT,
+                PackedBoard.CAO_CAO_TOP_LEFT};
+        for (int code : codes) {
+            int width = PackedBoard.widthOf(code);
+            int height = PackedBoard.heightOf(code);
+            for (int cell = 0; cell < CELLS; cell++) {
+                int row = cell / PackedBoard.WIDTH;
+                int col = cell % PackedBoard.WIDTH;
+                if (row + height > PackedBoard.HEIGHT || col + width > PackedBoard.WIDTH) {
+                    continue;
+                }
+                for (int d = 0; d < DIRECTIONS; d++) {
+                    int newRow = row + DIRECTION_ROWS[d];
+                    int newCol = col + DIRECTION_COLS[d];
+                    if (newRow < 0 || newRow + height > PackedBoard.HEIGHT
+                            || newCol < 0 || newCol + width > PackedBoard.WIDTH) {
+                        continue;
+                    }
+                    int newCell = newRow * PackedBoard.WIDTH + newCol;
+                    int entry = (code * CELLS + cell) * DIRECTIONS + d;
+                    REQUIRED_EMPTY[entry] = PackedBoard.cellMask(code, newCell) & ~PackedBoard.cellMask(code, cell);
+                    DELTAS[entry] = PackedBoard.pieceBits(code, cell) ^ PackedBoard.pieceBits(code, newCell);
+                    MOVES[entry] = PackedBoard.move(cell, newCell);
+                }
+            }
+        }
+    }
+
+    private MoveGenerator() {
+    }
+
+    // Writes the packed legal moves into moves and returns how many there are.
+    // The array must hold at least PackedBoard.MAX_MOVES entries.
+    public static int generate(long board, int[] moves) {
+        int empty = PackedBoard.emptyMask(board);
+        int count = 0;
+        for (int cells = empty; cells != 0; cells &= cells - 1) {
+            int target = Integer.numberOfTrailingZeros(cells);
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int entry = entry(board, target, d, empty);
+                if (entry >= 0) {
+                    moves[count++] = MOVES[entry];
+                }
+            }
+        }
+        return count;
+    }
+
+    // The packed move sliding the piece with the given top-left code and cell
+    // one step in the direction (0 up, 1 down, 2 left, 3 right), or -1 if it
+    // would leave the board or enter a cell missing from the empty mask
+    public static int move(int code, int cell, int direction, int empty) {
+        int entry = (code * CELLS + cell) * DIRECTIONS + direction;
+        int required = REQUIRED_EMPTY[entry];
+        return required == 0 || (required & ~empty) != 0 ? -1 : MOVES[entry];
+    }
+
+    // XOR turning a board into its successor, and the packed move, for a
+    // move already known to be legal; used by BatchMoveGenerator
+    static long delta(int code, int cell, int direction) {
+        return DELTAS[(code * CELLS + cell) * DIRECTIONS + direction];
+    }
+
+    static int packedMove(int code, int cell, int direction) {
+        return MOVES[(code * CELLS + cell) * DIRECTIONS + direction];
+    }
+
+    // Like generate, but also writes the successor boards
+    public static int successors(long board, long[] states, int[] moves) {
+        int empty = PackedBoard.emptyMask(board);
+        int count = 0;
+        for (int cells = empty; cells != 0; cells &= cells - 1) {
+            int target = Integer.numberOfTrailingZeros(cells);
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int entry = entry(board, target, d, empty);
+                if (entry >= 0) {
+                    states[count] = board ^ DELTAS[entry];
+                    moves[count] = MOVES[entry];
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Table entry of the piece that would slide into the empty target cell in
+    // the given direction, or -1 if there is no such legal move
+    private static int entry(long board, int target, int direction, int empty) {
+        int source = SOURCES[target * DIRECTIONS + direction];
+        if (source < 0) {
+            return -1;
+        }
+        int from = PackedBoard.topLeftOf(board, source);
+        if (from < 0) {
+            return -1;
+        }
+        int entry = (PackedBoard.cellAt(board, from) * CELLS + from) * DIRECTIONS + direction;
+        int required = REQUIRED_EMPTY[entry];
+        // A wide move enters two empty cells; it is only emitted from the lower one
+        if (required == 0 || (required & ~empty) != 0 || Integer.numberOfTrailingZeros(required) != target) {
+            return -1;
+        }
+        return entry;
+    }
+}
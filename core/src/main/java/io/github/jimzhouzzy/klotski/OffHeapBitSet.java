@@ -0,0 +1,93 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Fixed-size bit set stored outside the Java heap in direct buffers, so even
+// a sweep over billions of indices gives the garbage collector nothing to
+// scan or copy. Words are accessed through a VarHandle, which makes add an
+// atomic set-if-absent that any number of threads may call at once. The
+// memory is released when the set itself is collected.
+public class OffHeapBitSet {
+    // Bits per direct buffer; a single buffer is limited to 2 GB
+    private static final int CHUNK_SHIFT = 33;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    private static final VarHandle WORDS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer[] chunks;
+    private final long capacity;
+
+    public OffHeapBitSet(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Unsupported bit set size: " + capacity);
+        }
+        this.capacity = capacity;
+        chunks = new ByteBuffer[(int) (((capacity - 1) >>> CHUNK_SHIFT) + 1)];
+        for (int i = 0; i < chunks.length; i++) {
+            long bits = Math.min(capacity - ((long) i << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+            int bytes = (int) (((bits + 63) >>> 6) * Long.BYTES);
+            // Atomic access needs 8-byte aligned words; direct memory comes zeroed
+            chunks[i] = ByteBuffer.allocateDirect(bytes + Long.BYTES - 1).alignedSlice(Long.BYTES)
+                    .order(ByteOrder.nativeOrder());
+        }
+    }
+
+    public boolean get(long index) {
+        checkIndex(index);
+        long word = (long) WORDS.getAcquire(chunks[(int) (index >>> CHUNK_SHIFT)], offsetOf(index));
+        return (word & (1L << index)) != 0;
+    }
+
+    // Sets the bit and reports whether it was clear before
+    public boolean add(long index) {
+        checkIndex(index);
+        ByteBuffer chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+        int offset = offsetOf(index);
+        long bit = 1L << index;
+        long word = (long) WORDS.getAcquire(chunk, offset);
+        while ((word & bit) == 0) {
+            long witness = (long) WORDS.compareAndExchange(chunk, offset, word, word | bit);
+            if (witness == word) {
+                return true;
+            }
+            word = witness;
+        }
+        return false;
+    }
+
+    // Number of set bits; scans the whole set
+    public long cardinality() {
+        long count = 0;
+        for (ByteBuffer chunk : chunks) {
+            for (int offset = 0; offset < chunk.capacity(); offset += Long.BYTES) {
+                count += Long.bitCount((long) WORDS.get(chunk, offset));
+            }
+        }
+        return count;
+    }
+
+    public void clear() {
+        for (ByteBuffer chunk : chunks) {
+            for (int offset = 0; offset < chunk.capacity(); offset += Long.BYTES) {
+                WORDS.setRelease(chunk, offset, 0L);
+            }
+        }
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= capacity) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for capacity " + capacity);
+        }
+    }
+
+    private static int offsetOf(long index) {
+        return (int) ((index & CHUNK_MASK) >>> 6) * Long.BYTES;
+    }
+}
@@ -0,0 +1,316 @@
+package io.github.jimzhouzzy.klotski;
+
+// Packs a 4x5 Klotski board into a single long.
+// Every cell takes 3 bits (cell index = row * BOARD_WIDTH + col), so the
+// whole board fits in the low 60 bits. A cell code names the shape of the
+// piece covering it and which part of the piece it is, which makes the
+// top-left corner of every piece readable without decoding the board.
+// Pieces of the same shape share codes, so the encoding is canonical: the
+// four Generals (and the four Soldiers) are interchangeable and every shape
+// configuration has exactly one packed value, whatever the piece ids are.
+// Use decode/pieceForMove to get back to concrete pieces.
+public final class PackedBoard {
+    public static final int WIDTH = KlotskiGame.BOARD_WIDTH;
+    public static final int HEIGHT = KlotskiGame.BOARD_HEIGHT;
+    public static final int CELLS = WIDTH * HEIGHT;
+
+    public static final int EMPTY = 0;
+    public static final int SOLDIER = 1;
+    public static final int GENERAL_TOP = 2;
+    public static final int GENERAL_BOTTOM = 3;
+    public static final int GUAN_YU_LEFT = 4;
+    public static final int GUAN_YU_RIGHT = 5;
+    public static final int CAO_CAO_TOP_LEFT = 6;
+    public static final int CAO_CAO = 7;
+
+    // Cao Cao's top-left corner in the winning position (row 3, col 1)
+    public static final int GOAL_CELL = 3 * WIDTH + 1;
+
+    // A board has exactly two empty cells, so no position has more than
+    // eight successors (one per empty cell and direction)
+    public static final int MAX_MOVES = 8;
+
+    // The lowest bit of every cell, and every cell of one column
+    private static final long LOW_BITS = 0x0249249249249249L;
+    private static final long COLUMN_0 = 0x0007007007007007L;
+    private static final long COLUMN_1 = COLUMN_0 << 3;
+    private static final long COLUMN_2 = COLUMN_0 << 6;
+    private static final long COLUMN_3 = COLUMN_0 << 9;
+
+    private PackedBoard() {
+    }
+
+    public static long encode(KlotskiGame game) {
+        return encode(game.pieces);
+    }
+
+    public static long encode(KlotskiGame.KlotskiPiece[] pieces) {
+        long board = 0L;
+        for (KlotskiGame.KlotskiPiece piece : pieces) {
+            int code = topLeftCode(piece.width, piece.height);
+            board |= pieceBits(code, piece.position[0] * WIDTH + piece.position[1]);
+        }
+        return board;
+    }
+
+    // Places the given concrete pieces on a packed board. A piece that already
+    // sits on a matching corner keeps it, so ids stay put where the boards
+    // agree; the other pieces of each shape fill the free corners in cell order.
+    public static KlotskiGame.KlotskiPiece[] decode(long board, KlotskiGame.KlotskiPiece[] template) {
+        KlotskiGame.KlotskiPiece[] pieces = new KlotskiGame.KlotskiPiece[template.length];
+        boolean[] claimed = new boolean[CELLS];
+
+        for (int i = 0; i < template.length; i++) {
+            KlotskiGame.KlotskiPiece piece = template[i];
+            int cell = piece.position[0] * WIDTH + piece.position[1];
+            if (cell < CELLS && !claimed[cell]
+                    && cellAt(board, cell) == topLeftCode(piece.width, piece.height)) {
+                claimed[cell] = true;
+                pieces[i] = copyAt(piece, cell);
+            }
+        }
+
+        for (int i = 0; i < template.length; i++) {
+            if (pieces[i] != null) continue;
+            KlotskiGame.KlotskiPiece piece = template[i];
+            int code = topLeftCode(piece.width, piece.height);
+            for (int cell = 0; cell < CELLS && pieces[i] == null; cell++) {
+                if (!claimed[cell] && cellAt(board, cell) == code) {
+                    claimed[cell] = true;
+                    pieces[i] = copyAt(piece, cell);
+                }
+            }
+            if (pieces[i] == null) {
+                throw new IllegalArgumentException("Board does not match the piece set: " + piece.name);
+            }
+        }
+        return pieces;
+    }
+
+    private static KlotskiGame.KlotskiPiece copyAt(KlotskiGame.KlotskiPiece piece, int cell) {
+        return new KlotskiGame.KlotskiPiece(piece.id, piece.name, piece.abbreviation,
+                piece.width, piece.height, new int[]{cell / WIDTH, cell % WIDTH});
+    }
+
+    // The concrete piece a packed move slides, or null if no piece has its
+    // top-left corner on the move's from cell
+    public static KlotskiGame.KlotskiPiece pieceForMove(KlotskiGame.KlotskiPiece[] pieces, int move) {
+        int from = moveFrom(move);
+        for (KlotskiGame.KlotskiPiece piece : pieces) {
+            if (piece.position[0] * WIDTH + piece.position[1] == from) {
+                return piece;
+            }
+        }
+        return null;
+    }
+
+    public static int cellAt(long board, int cell) {
+        return (int) (board >>> (3 * cell)) & 7;
+    }
+
+    public static boolean isSolved(long board) {
+        return cellAt(board, GOAL_CELL) == CAO_CAO_TOP_LEFT;
+    }
+
+    // Cao Cao's top-left cell, or -1 if he is not on the board
+    public static int caoCaoCell(long board) {
+        long high = (board >>> 2) & LOW_BITS;
+        long middle = (board >>> 1) & LOW_BITS;
+        long corner = high & middle & ~board & LOW_BITS;
+        return corner == 0 ? -1 : Long.numberOfTrailingZeros(corner) / 3;
+    }
+
+    // Guan Yu's left cell, or -1 if he is not on the board
+    public static int guanYuCell(long board) {
+        long high = (board >>> 2) & LOW_BITS;
+        long middle = (board >>> 1) & LOW_BITS;
+        long left = high & ~middle & ~board & LOW_BITS;
+        return left == 0 ? -1 : Long.numberOfTrailingZeros(left) / 3;
+    }
+
+    // Bit set (bit = cell index) of the empty cells
+    public static int emptyMask(long board) {
+        long empty = ~(board | board >>> 1 | board >>> 2) & LOW_BITS;
+        int mask = 0;
+        while (empty != 0) {
+            mask |= 1 << (Long.numberOfTrailingZeros(empty) / 3);
+            empty &= empty - 1;
+        }
+        return mask;
+    }
+
+    // Top-left cell of the piece covering the given cell, or -1 if it is empty
+    public static int topLeftOf(long board, int cell) {
+        switch (cellAt(board, cell)) {
+            case EMPTY:
+                return -1;
+            case GENERAL_BOTTOM:
+                return cell - WIDTH;
+            case GUAN_YU_RIGHT:
+                return cell - 1;
+            case CAO_CAO:
+                return caoCaoCell(board);
+            default:
+                return cell;
+        }
+    }
+
+    public static boolean isTopLeft(int code) {
+        return code == SOLDIER || code == GENERAL_TOP || code == GUAN_YU_LEFT || code == CAO_CAO_TOP_LEFT;
+    }
+
+    public static int topLeftCode(int width, int height) {
+        if (width == 2 && height == 2) return CAO_CAO_TOP_LEFT;
+        if (width == 2 && height == 1) return GUAN_YU_LEFT;
+        if (width == 1 && height == 2) return GENERAL_TOP;
+        if (width == 1 && height == 1) return SOLDIER;
+        throw new IllegalArgumentException("Unsupported piece size: " + width + "x" + height);
+    }
+
+    public static int widthOf(int topLeftCode) {
+        return topLeftCode == GUAN_YU_LEFT || topLeftCode == CAO_CAO_TOP_LEFT ? 2 : 1;
+    }
+
+    public static int heightOf(int topLeftCode) {
+        return topLeftCode == GENERAL_TOP || topLeftCode == CAO_CAO_TOP_LEFT ? 2 : 1;
+    }
+
+    // The cell codes a piece contributes when its top-left corner is at the given cell
+    public static long pieceBits(int topLeftCode, int cell) {
+        int shift = 3 * cell;
+        switch (topLeftCode) {
+            case SOLDIER:
+                return (long) SOLDIER << shift;
+            case GENERAL_TOP:
+                return (long) GENERAL_TOP << shift | (long) GENERAL_BOTTOM << (shift + 3 * WIDTH);
+            case GUAN_YU_LEFT:
+                return (long) GUAN_YU_LEFT << shift | (long) GUAN_YU_RIGHT << (shift + 3);
+            case CAO_CAO_TOP_LEFT:
+                return (long) CAO_CAO_TOP_LEFT << shift | (long) CAO_CAO << (shift + 3)
+                        | (long) CAO_CAO << (shift + 3 * WIDTH) | (long) CAO_CAO << (shift + 3 * WIDTH + 3);
+            default:
+                throw new IllegalArgumentException("Not a top-left cell code: " + topLeftCode);
+        }
+    }
+
+    // Bit set (bit = cell index) of the cells a piece covers when its top-left
+    // corner is at the given cell. An empty cell counts as a single cell.
+    public static int cellMask(int topLeftCode, int cell) {
+        switch (topLeftCode) {
+            case GENERAL_TOP:
+                return (1 | 1 << WIDTH) << cell;
+            case GUAN_YU_LEFT:
+                return 0b11 << cell;
+            case CAO_CAO_TOP_LEFT:
+                return (0b11 | 0b11 << WIDTH) << cell;
+            default:
+                return 1 << cell;
+        }
+    }
+
+    // A move is packed as (from cell << 5) | to cell, both being the top-left
+    // corner of the moving piece before and after the move
+    public static int move(int fromCell, int toCell) {
+        return fromCell << 5 | toCell;
+    }
+
+    public static int moveFrom(int move) {
+        return move >>> 5;
+    }
+
+    public static int moveTo(int move) {
+        return move & 31;
+    }
+
+    // Slides the piece whose top-left corner is at the move's from cell.
+    // The move is not checked for legality.
+    public static long applyMove(long board, int move) {
+        int code = cellAt(board, moveFrom(move));
+        return board & ~pieceBits(code, moveFrom(move)) | pieceBits(code, moveTo(move));
+    }
+
+    public static int reverseMove(int move) {
+        return move(moveTo(move), moveFrom(move));
+    }
+
+    // The board reflected left to right. The goal (Cao Cao at row 3, col 1)
+    // maps onto itself, so a board and its mirror are equally far from it.
+    public static long mirror(long board) {
+        // Reverse the four cells of every row
+        long mirrored = (board & COLUMN_0) << 9 | (board & COLUMN_1) << 3
+                | (board & COLUMN_2) >>> 3 | (board & COLUMN_3) >>> 9;
+
+        // Guan Yu's halves swapped sides: turn 4 <-> 5 by flipping the low bit
+        long high = (mirrored >>> 2) & LOW_BITS;
+        long middle = (mirrored >>> 1) & LOW_BITS;
+        mirrored ^= high & ~middle;
+
+        // Cao Cao's corner code now sits on his top-right cell, move it back
+        int topRight = caoCaoCell(mirrored);
+        if (topRight >= 0) {
+            int cell = topRight - 1;
+            long caoCao = pieceBits(CAO_CAO_TOP_LEFT, cell);
+            mirrored = mirrored & ~occupiedMask(caoCao) | caoCao;
+        }
+        return mirrored;
+    }
+
+    // One key per pair of mirror images: the smaller of the two encodings
+    public static long canonicalKey(long board) {
+        return Math.min(board, mirror(board));
+    }
+
+    // The same move played on the mirrored board. The board is the one the
+    // move is played on (before mirroring), needed to know the piece's width.
+    public static int mirrorMove(long board, int move) {
+        int width = widthOf(cellAt(board, moveFrom(move)));
+        return move(mirrorCell(moveFrom(move), width), mirrorCell(moveTo(move), width));
+    }
+
+    private static int mirrorCell(int cell, int width) {
+        int row = cell / WIDTH;
+        int col = cell % WIDTH;
+        return row * WIDTH + (WIDTH - width - col);
+    }
+
+    // Writes every successor of the board into states/moves and returns how many there are.
+    // Both arrays must hold at least MAX_MOVES entries. See MoveGenerator.
+    public static int successors(long board, long[] states, int[] moves) {
+        return MoveGenerator.successors(board, states, moves);
+    }
+
+    // Widens every non-empty 3-bit cell of the value to 0b111
+    private static long occupiedMask(long bits) {
+        long any = (bits | bits >>> 1 | bits >>> 2) & LOW_BITS;
+        return any * 7;
+    }
+
+    public static String toString(long board) {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                sb.append(abbreviationOf(cellAt(board, row * WIDTH + col))).append(' ');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static char abbreviationOf(int code) {
+        switch (code) {
+            case SOLDIER:
+                return 'S';
+            case GENERAL_TOP:
+            case GENERAL_BOTTOM:
+                return 'G';
+            case GUAN_YU_LEFT:
+            case GUAN_YU_RIGHT:
+                return 'Y';
+            case CAO_CAO_TOP_LEFT:
+            case CAO_CAO:
+                return 'C';
+            default:
+                return '.';
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Level-synchronous BFS: each depth layer is expanded in parallel on a
+// ForkJoinPool, then merged into the arena on the calling thread.
+// During expansion the visited set is only read. New boards go into a
+// lock-free map that keeps, per board, the smallest (frontier position,
+// successor index) that generated it. That is exactly the order in which
+// BfsSolver would have discovered them, so sorting the new layer by it gives
+// the same arena, the same parents and therefore the same solution and
+// counters as the sequential solver.
+public class ParallelBfsSolver implements SolverEngine {
+    // Frontier nodes per leaf task
+    private static final int GRAIN = 256;
+    // Packed moves take 10 bits below the discovery order
+    private static final int MOVE_BITS = 10;
+    private static final int MOVE_MASK = (1 << MOVE_BITS) - 1;
+
+    private final int expectedStates;
+    private final boolean stopAtFirstGoal;
+    private final boolean offHeapVisited;
+    private final ForkJoinPool pool;
+
+    public ParallelBfsSolver(int expectedStates, boolean stopAtFirstGoal) {
+        this(expectedStates, stopAtFirstGoal, ForkJoinPool.commonPool());
+    }
+
+    public ParallelBfsSolver(int expectedStates, boolean stopAtFirstGoal, ForkJoinPool pool) {
+        this(expectedStates, stopAtFirstGoal, false, pool);
+    }
+
+    // See BfsSolver for offHeapVisited
+    public ParallelBfsSolver(int expectedStates, boolean stopAtFirstGoal, boolean offHeapVisited,
+                             ForkJoinPool pool) {
+        this.expectedStates = expectedStates;
+        this.stopAtFirstGoal = stopAtFirstGoal;
+        this.offHeapVisited = offHeapVisited;
+        this.pool = pool;
+    }
+
+    @Override
+    public String getName() {
+        return "Parallel BFS (" + pool.getParallelism() + " threads"
+                + (stopAtFirstGoal ? "" : ", exhaustive") + (offHeapVisited ? ", off-heap visited)" : ")");
+    }
+
+    @Override
+    public SolveResult solve(long initialState) {
+        long startTime = System.nanoTime();
+        int statesExamined = 0;
+        int solutionsFound = 0;
+        int[] bestSolution = null;
+
+        VisitedSet visited = offHeapVisited
+                ? RankedVisitedSet.forBoard(initialState) : new LongHashSet(expectedStates);
+        StateArena arena = new StateArena();
+
+        arena.add(initialState, StateArena.NO_PARENT, 0);
+        visited.add(PackedBoard.canonicalKey(initialState));
+
+        int goalIndex = stopAtFirstGoal && PackedBoard.isSolved(initialState) ? 0 : -1;
+        int layerStart = 0;
+
+        while (layerStart < arena.size() && goalIndex < 0) {
+            int layerEnd = arena.size();
+
+            // Solved boards are counted but never expanded, as in BfsSolver
+            for (int index = layerStart; index < layerEnd; index++) {
+                if (PackedBoard.isSolved(arena.state(index))) {
+                    solutionsFound++;
+                    if (bestSolution == null) {
+                        bestSolution = arena.path(index);
+                    }
+                }
+            }
+
+            ConcurrentLongMinMap next = new ConcurrentLongMinMap((layerEnd - layerStart) * PackedBoard.MAX_MOVES);
+            pool.invoke(new ExpandTask(arena, visited, next, layerStart, layerStart, layerEnd));
+
+            // Merge the new layer in discovery order
+            long[] discovered = new long[next.capacity()];
+            int count = 0;
+            for (int slot = 0; slot < next.capacity(); slot++) {
+                if (next.keyAt(slot) != 0L) {
+                    discovered[count++] = next.valueAt(slot);
+                }
+            }
+            Arrays.sort(discovered, 0, count);
+
+            int expanded = layerEnd - layerStart;
+            for (int i = 0; i < count; i++) {
+                int order = (int) (discovered[i] >>> MOVE_BITS) - 1;
+                int parent = layerStart + order / PackedBoard.MAX_MOVES;
+                int move = (int) discovered[i] & MOVE_MASK;
+                long state = PackedBoard.applyMove(arena.state(parent), move);
+                visited.add(PackedBoard.canonicalKey(state));
+                int index = arena.add(state, parent, move);
+                if (stopAtFirstGoal && PackedBoard.isSolved(state)) {
+                    // The sequential search would have stopped while expanding this parent
+                    goalIndex = index;
+                    expanded = parent - layerStart + 1;
+                    break;
+                }
+            }
+            statesExamined += expanded;
+            layerStart = layerEnd;
+        }
+
+        if (goalIndex >= 0) {
+            solutionsFound = 1;
+            bestSolution = arena.path(goalIndex);
+        }
+
+        return new SolveResult(bestSolution, statesExamined, visited.size(), solutionsFound,
+                System.nanoTime() - startTime);
+    }
+
+    // Expands frontier nodes [from, to) into the next-layer map
+    private static class ExpandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final StateArena arena;
+        private final VisitedSet visited;
+        private final ConcurrentLongMinMap next;
+        private final int layerStart;
+        private final int from;
+        private final int to;
+
+        ExpandTask(StateArena arena, VisitedSet visited, ConcurrentLongMinMap next,
+                   int layerStart, int from, int to) {
+            this.arena = arena;
+            this.visited = visited;
+            this.next = next;
+            this.layerStart = layerStart;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ExpandTask(arena, visited, next, layerStart, from, middle),
+                        new ExpandTask(arena, visited, next, layerStart, middle, to));
+                return;
+            }
+            long[] nextStates = new long[PackedBoard.MAX_MOVES];
+            int[] nextMoves = new int[PackedBoard.MAX_MOVES];
+            for (int index = from; index < to; index++) {
+                long current = arena.state(index);
+                if (PackedBoard.isSolved(current)) {
+                    continue;
+                }
+                int count = PackedBoard.successors(current, nextStates, nextMoves);
+                for (int i = 0; i < count; i++) {
+                    long key = PackedBoard.canonicalKey(nextStates[i]);
+                    if (visited.contains(key)) {
+                        continue;
+                    }
+                    // +1 keeps the value positive, as the map requires
+                    long order = (long) (index - layerStart) * PackedBoard.MAX_MOVES + i + 1;
+                    next.offer(key, order << MOVE_BITS | nextMoves[i]);
+                }
+            }
+        }
+    }
+
+    // Prints solve times and speedup over one thread for growing pool sizes
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        long board = PackedBoard.encode(new KlotskiGame());
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        SolveResult sequential = new BfsSolver(KlotskiSolver.DEFAULT_EXPECTED_STATES, false).solve(board);
+        System.out.printf("Exhaustive search of the classic layout, %d rounds, %d processors\n", rounds, processors);
+        System.out.printf("%-10s %12s %10s\n", "threads", "ms/solve", "speedup");
+        System.out.printf("%-10s %12.3f %10s\n", "sequential", time(
+                new BfsSolver(KlotskiSolver.DEFAULT_EXPECTED_STATES, false), board, rounds) / 1e6, "-");
+
+        double single = 0;
+        for (int threads = 1; threads <= Math.max(processors, 1); threads <<= 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ParallelBfsSolver engine = new ParallelBfsSolver(KlotskiSolver.DEFAULT_EXPECTED_STATES, false, pool);
+                SolveResult result = engine.solve(board);
+                if (!Arrays.equals(result.getMoves(), sequential.getMoves())
+                        || result.getStatesVisited() != sequential.getStatesVisited()) {
+                    System.err.println("Parallel result differs from the sequential solver");
+                }
+                double nanos = time(engine, board, rounds);
+                if (threads == 1) {
+                    single = nanos;
+                }
+                System.out.printf("%-10d %12.3f %9.2fx\n", threads, nanos / 1e6, single / nanos);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static double time(SolverEngine engine, long board, int rounds) {
+        // Warm up the JIT first
+        for (int i = 0; i < rounds; i++) {
+            engine.solve(board);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            engine.solve(board);
+        }
+        return (System.nanoTime() - startTime) / (double) rounds;
+    }
+}
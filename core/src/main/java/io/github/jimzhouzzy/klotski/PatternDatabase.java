@@ -0,0 +1,257 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Pattern-database heuristic built from KlotskiGame's piece set.
+// A board is projected onto Cao Cao, Guan Yu and the two empty cells; every
+// other piece becomes anonymous 1x1 filler. In that abstraction a filler
+// slides into an adjacent empty cell for free and Cao Cao or Guan Yu moves
+// cost 1, so every real move maps to abstract moves of no greater cost and
+// the exact abstract distance to the goal is an admissible lower bound.
+// The table is computed once, stored as a byte array on disk and loaded on
+// first use.
+public class PatternDatabase implements Heuristic {
+    public static final String FILE_NAME = "pattern.db";
+    public static final int UNREACHABLE = 0xFF;
+
+    private static final int MAGIC = 0x4B504442; // "KPDB"
+    private static final int VERSION = 1;
+
+    private static final int CELLS = PackedBoard.CELLS;
+    private static final int WIDTH = PackedBoard.WIDTH;
+    private static final int HEIGHT = PackedBoard.HEIGHT;
+    private static final int SIZE = CELLS * CELLS * CELLS * CELLS;
+
+    // Cell contents in the abstract board
+    private static final byte FILLER = 0;
+    private static final byte EMPTY = 1;
+    private static final byte CAO_CAO = 2;
+    private static final byte GUAN_YU = 3;
+
+    private static final int[] DIRECTION_ROWS = {-1, 1, 0, 0};
+    private static final int[] DIRECTION_COLS = {0, 0, -1, 1};
+
+    private static PatternDatabase instance;
+
+    // Indexed by (caoCao, guanYu, empty1, empty2) cells, empty1 < empty2
+    private final byte[] distances;
+
+    private PatternDatabase(byte[] distances) {
+        this.distances = distances;
+    }
+
+    // Loads the table from the config directory, building and saving it if
+    // the file is missing or unreadable
+    public static synchronized PatternDatabase getInstance() {
+        if (instance == null) {
+            File file = new File(new ConfigPathHelper().getConfigFilePath("Klotski", FILE_NAME));
+            instance = load(file);
+            if (instance == null) {
+                instance = build();
+                instance.save(file);
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public int estimate(long board) {
+        int caoCao = PackedBoard.caoCaoCell(board);
+        int guanYu = PackedBoard.guanYuCell(board);
+        int empties = PackedBoard.emptyMask(board);
+        // Custom piece sets can lack Cao Cao or Guan Yu or leave other than
+        // two cells empty; the table has no entry for those boards
+        if (caoCao < 0 || guanYu < 0 || Integer.bitCount(empties) != 2) {
+            return KlotskiHeuristics.blocking(board);
+        }
+        int first = Integer.numberOfTrailingZeros(empties);
+        int second = 31 - Integer.numberOfLeadingZeros(empties);
+        return distances[index(caoCao, guanYu, first, second)] & 0xFF;
+    }
+
+    private static int index(int caoCao, int guanYu, int first, int second) {
+        return ((caoCao * CELLS + guanYu) * CELLS + first) * CELLS + second;
+    }
+
+    public static PatternDatabase build() {
+        byte[] distances = new byte[SIZE];
+        Arrays.fill(distances, (byte) UNREACHABLE);
+
+        // 0-1 BFS from every abstract goal: moves are reversible and cost the
+        // same both ways, so forward distances from the goals are the answer
+        int[] deque = new int[Integer.highestOneBit(SIZE) << 3];
+        int mask = deque.length - 1;
+        int head = 0;
+        int tail = 0;
+
+        byte[] board = new byte[CELLS];
+        for (int guanYu = 0; guanYu < CELLS; guanYu++) {
+            for (int first = 0; first < CELLS; first++) {
+                for (int second = first + 1; second < CELLS; second++) {
+                    if (!layout(board, PackedBoard.GOAL_CELL, guanYu, first, second)) continue;
+                    int index = index(PackedBoard.GOAL_CELL, guanYu, first, second);
+                    distances[index] = 0;
+                    deque[tail++ & mask] = index;
+                }
+            }
+        }
+
+        int[] next = new int[32];
+        int[] costs = new int[32];
+        while (head != tail) {
+            int index = deque[head++ & mask];
+            int distance = distances[index] & 0xFF;
+            int count = neighbours(index, board, next, costs);
+            for (int i = 0; i < count; i++) {
+                int candidate = distance + costs[i];
+                if (candidate < (distances[next[i]] & 0xFF)) {
+                    distances[next[i]] = (byte) candidate;
+                    if (tail - head > mask) {
+                        throw new IllegalStateException("Pattern database queue overflow");
+                    }
+                    if (costs[i] == 0) {
+                        deque[--head & mask] = next[i];
+                    } else {
+                        deque[tail++ & mask] = next[i];
+                    }
+                }
+            }
+        }
+        return new PatternDatabase(distances);
+    }
+
+    // Abstract successors of an index, with the cost of each move
+    private static int neighbours(int index, byte[] board, int[] next, int[] costs) {
+        int second = index % CELLS;
+        int first = index / CELLS % CELLS;
+        int guanYu = index / (CELLS * CELLS) % CELLS;
+        int caoCao = index / (CELLS * CELLS * CELLS);
+        layout(board, caoCao, guanYu, first, second);
+
+        int count = 0;
+        int[] empties = {first, second};
+        for (int e = 0; e < 2; e++) {
+            int empty = empties[e];
+            int other = empties[1 - e];
+            for (int d = 0; d < 4; d++) {
+                int row = empty / WIDTH - DIRECTION_ROWS[d];
+                int col = empty % WIDTH - DIRECTION_COLS[d];
+                if (row < 0 || row >= HEIGHT || col < 0 || col >= WIDTH) continue;
+                int cell = row * WIDTH + col;
+                if (board[cell] == FILLER) {
+                    // The filler slides into the empty cell and leaves its own cell empty
+                    next[count] = index(caoCao, guanYu, Math.min(cell, other), Math.max(cell, other));
+                    costs[count++] = 0;
+                }
+            }
+        }
+
+        for (int d = 0; d < 4; d++) {
+            int moved = slide(caoCao, 2, 2, d, first, second);
+            if (moved >= 0) {
+                next[count] = index(moved >>> 16, guanYu, (moved >>> 8) & 0xFF, moved & 0xFF);
+                costs[count++] = 1;
+            }
+            moved = slide(guanYu, 2, 1, d, first, second);
+            if (moved >= 0) {
+                next[count] = index(caoCao, moved >>> 16, (moved >>> 8) & 0xFF, moved & 0xFF);
+                costs[count++] = 1;
+            }
+        }
+        return count;
+    }
+
+    // Slides a piece one cell if every cell it moves into is empty. Returns the
+    // new top-left cell and the new empty cells packed as (cell << 16 | e1 << 8 | e2),
+    // or -1 if the move is blocked.
+    private static int slide(int topLeft, int width, int height, int direction, int first, int second) {
+        int row = topLeft / WIDTH + DIRECTION_ROWS[direction];
+        int col = topLeft % WIDTH + DIRECTION_COLS[direction];
+        if (row < 0 || row + height > HEIGHT || col < 0 || col + width > WIDTH) return -1;
+        int target = row * WIDTH + col;
+
+        int empties = 1 << first | 1 << second;
+        int before = PackedBoard.cellMask(PackedBoard.topLeftCode(width, height), topLeft);
+        int after = PackedBoard.cellMask(PackedBoard.topLeftCode(width, height), target);
+        int entered = after & ~before;
+        if ((entered & ~empties) != 0) return -1;
+
+        int newEmpties = (empties & ~entered) | (before & ~after);
+        int newFirst = Integer.numberOfTrailingZeros(newEmpties);
+        int newSecond = 31 - Integer.numberOfLeadingZeros(newEmpties);
+        return target << 16 | newFirst << 8 | newSecond;
+    }
+
+    // Fills the abstract board, returning false if the pieces do not fit
+    private static boolean layout(byte[] board, int caoCao, int guanYu, int first, int second) {
+        if (!fits(caoCao, 2, 2) || !fits(guanYu, 2, 1)) return false;
+        int cao = PackedBoard.cellMask(PackedBoard.CAO_CAO_TOP_LEFT, caoCao);
+        int yu = PackedBoard.cellMask(PackedBoard.GUAN_YU_LEFT, guanYu);
+        int empties = 1 << first | 1 << second;
+        if ((cao & yu) != 0 || (empties & (cao | yu)) != 0) return false;
+
+        for (int cell = 0; cell < CELLS; cell++) {
+            int bit = 1 << cell;
+            board[cell] = (cao & bit) != 0 ? CAO_CAO : (yu & bit) != 0 ? GUAN_YU
+                    : (empties & bit) != 0 ? EMPTY : FILLER;
+        }
+        return true;
+    }
+
+    private static boolean fits(int topLeft, int width, int height) {
+        return topLeft / WIDTH + height <= HEIGHT && topLeft % WIDTH + width <= WIDTH;
+    }
+
+    private static PatternDatabase load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != SIZE) {
+                System.err.println("Ignoring outdated pattern database: " + file);
+                return null;
+            }
+            byte[] distances = new byte[SIZE];
+            in.readFully(distances);
+            return new PatternDatabase(distances);
+        } catch (IOException e) {
+            System.err.println("Failed to load pattern database: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void save(File file) {
+        try {
+            AtomicFile.replace(file, temp -> {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(SIZE);
+                    out.write(distances);
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to save pattern database: " + e.getMessage());
+        }
+    }
+
+    // Builds the table offline: java PatternDatabase [output file]
+    public static void main(String[] args) {
+        long startTime = System.currentTimeMillis();
+        PatternDatabase database = build();
+        File file = new File(args.length > 0 ? args[0]
+                : new ConfigPathHelper().getConfigFilePath("Klotski", FILE_NAME));
+        database.save(file);
+        System.out.printf("Built pattern database in %.3f seconds, saved to %s\n",
+                (System.currentTimeMillis() - startTime) / 1000.0, file);
+    }
+}
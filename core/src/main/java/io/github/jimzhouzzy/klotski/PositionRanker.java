@@ -0,0 +1,195 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Perfect hash between the boards of one piece set and 0..size()-1.
+// Boards are read cell by cell; at each free cell the options are tried in a
+// fixed order (empty, soldier, general, Guan Yu, Cao Cao) and a board's rank
+// is the number of boards that branch off earlier. The branch sizes come from
+// a table of completion counts indexed by the cell, the occupancy of the next
+// five cells (the furthest any earlier piece can reach) and the pieces left
+// to place. The table is filled once, so rank and unrank only read arrays;
+// rank also keeps, per entry, the branch sizes summed up to each option so a
+// cell costs one lookup.
+public class PositionRanker {
+    private static final int WINDOW = 5;
+    private static final int WINDOWS = 1 << WINDOW;
+
+    // Option order at a free cell
+    private static final int[] OPTIONS = {
+            PackedBoard.EMPTY,
+            PackedBoard.SOLDIER,
+            PackedBoard.GENERAL_TOP,
+            PackedBoard.GUAN_YU_LEFT,
+            PackedBoard.CAO_CAO_TOP_LEFT
+    };
+
+    // Position of each top-left code in OPTIONS
+    private static final int[] OPTION_INDEX = new int[8];
+
+    static {
+        for (int i = 0; i < OPTIONS.length; i++) {
+            OPTION_INDEX[OPTIONS[i]] = i;
+        }
+    }
+
+    private static final Map<Integer, PositionRanker> instances = new HashMap<>();
+
+    private final int soldiers;
+    private final int generals;
+    private final int guanYus;
+    private final int caoCaos;
+    private final long[] completions;
+    // Indexed by index(...) * OPTIONS.length + option position
+    private final long[] offsets;
+
+    public PositionRanker(int soldiers, int generals, int guanYus, int caoCaos) {
+        this.soldiers = soldiers;
+        this.generals = generals;
+        this.guanYus = guanYus;
+        this.caoCaos = caoCaos;
+        this.completions = new long[(PackedBoard.CELLS + 1) * WINDOWS
+                * (soldiers + 1) * (generals + 1) * (guanYus + 1) * (caoCaos + 1)];
+        this.offsets = new long[completions.length * OPTIONS.length];
+
+        // Fill from the last cell backwards so every lookup hits a finished entry
+        completions[index(PackedBoard.CELLS, 0, 0, 0, 0, 0)] = 1;
+        for (int cell = PackedBoard.CELLS - 1; cell >= 0; cell--) {
+            for (int window = 0; window < WINDOWS; window++) {
+                for (int s = 0; s <= soldiers; s++) {
+                    for (int g = 0; g <= generals; g++) {
+                        for (int h = 0; h <= guanYus; h++) {
+                            for (int c = 0; c <= caoCaos; c++) {
+                                int index = index(cell, window, s, g, h, c);
+                                completions[index] = count(cell, window, s, g, h, c);
+                                long offset = 0;
+                                for (int i = 0; i < OPTIONS.length; i++) {
+                                    offsets[index * OPTIONS.length + i] = offset;
+                                    offset += branch(cell, window, OPTIONS[i], s, g, h, c);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Rankers only read their table after construction, so one per piece set
+    // is shared, keyed by Tablebase.pieceCounts
+    public static synchronized PositionRanker forBoard(long board) {
+        int counts = Tablebase.pieceCounts(board);
+        PositionRanker ranker = instances.get(counts);
+        if (ranker == null) {
+            ranker = new PositionRanker(
+                    Tablebase.countOf(counts, PackedBoard.SOLDIER),
+                    Tablebase.countOf(counts, PackedBoard.GENERAL_TOP),
+                    Tablebase.countOf(counts, PackedBoard.GUAN_YU_LEFT),
+                    Tablebase.countOf(counts, PackedBoard.CAO_CAO_TOP_LEFT));
+            instances.put(counts, ranker);
+        }
+        return ranker;
+    }
+
+    // Number of distinct boards with this piece set
+    public long size() {
+        return completions[index(0, 0, soldiers, generals, guanYus, caoCaos)];
+    }
+
+    public long rank(long board) {
+        long rank = 0;
+        int window = 0;
+        int s = soldiers, g = generals, h = guanYus, c = caoCaos;
+        for (int cell = 0; cell < PackedBoard.CELLS; cell++) {
+            if ((window & 1) != 0) {
+                window >>>= 1;
+                continue;
+            }
+            int code = PackedBoard.cellAt(board, cell);
+            rank += offsets[index(cell, window, s, g, h, c) * OPTIONS.length + OPTION_INDEX[code]];
+            window = (window | PackedBoard.cellMask(code, 0)) >>> 1;
+            switch (code) {
+                case PackedBoard.SOLDIER: s--; break;
+                case PackedBoard.GENERAL_TOP: g--; break;
+                case PackedBoard.GUAN_YU_LEFT: h--; break;
+                case PackedBoard.CAO_CAO_TOP_LEFT: c--; break;
+                default: break;
+            }
+        }
+        return rank;
+    }
+
+    public long unrank(long rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IllegalArgumentException("Rank out of range: " + rank);
+        }
+        long board = 0L;
+        int window = 0;
+        int s = soldiers, g = generals, h = guanYus, c = caoCaos;
+        for (int cell = 0; cell < PackedBoard.CELLS; cell++) {
+            if ((window & 1) != 0) {
+                window >>>= 1;
+                continue;
+            }
+            int code = PackedBoard.EMPTY;
+            for (int option : OPTIONS) {
+                long branch = branch(cell, window, option, s, g, h, c);
+                if (rank < branch) {
+                    code = option;
+                    break;
+                }
+                rank -= branch;
+            }
+            window = (window | PackedBoard.cellMask(code, 0)) >>> 1;
+            switch (code) {
+                case PackedBoard.SOLDIER: s--; break;
+                case PackedBoard.GENERAL_TOP: g--; break;
+                case PackedBoard.GUAN_YU_LEFT: h--; break;
+                case PackedBoard.CAO_CAO_TOP_LEFT: c--; break;
+                default: continue;
+            }
+            board |= PackedBoard.pieceBits(code, cell);
+        }
+        return board;
+    }
+
+    // Completions of a board whose next free cell is the given one
+    private long count(int cell, int window, int s, int g, int h, int c) {
+        if ((window & 1) != 0) {
+            return completions[index(cell + 1, window >>> 1, s, g, h, c)];
+        }
+        long total = 0;
+        for (int option : OPTIONS) {
+            total += branch(cell, window, option, s, g, h, c);
+        }
+        return total;
+    }
+
+    // Completions after placing the option on a free cell, 0 if it cannot go there
+    private long branch(int cell, int window, int option, int s, int g, int h, int c) {
+        switch (option) {
+            case PackedBoard.SOLDIER: if (s-- == 0) return 0; break;
+            case PackedBoard.GENERAL_TOP: if (g-- == 0) return 0; break;
+            case PackedBoard.GUAN_YU_LEFT: if (h-- == 0) return 0; break;
+            case PackedBoard.CAO_CAO_TOP_LEFT: if (c-- == 0) return 0; break;
+            default: break;
+        }
+        int row = cell / PackedBoard.WIDTH;
+        int col = cell % PackedBoard.WIDTH;
+        if (row + PackedBoard.heightOf(option) > PackedBoard.HEIGHT
+                || col + PackedBoard.widthOf(option) > PackedBoard.WIDTH) {
+            return 0;
+        }
+        int footprint = PackedBoard.cellMask(option, 0);
+        if ((window & footprint) != 0) {
+            return 0;
+        }
+        return completions[index(cell + 1, (window | footprint) >>> 1, s, g, h, c)];
+    }
+
+    private int index(int cell, int window, int s, int g, int h, int c) {
+        return ((((cell * WINDOWS + window) * (soldiers + 1) + s) * (generals + 1) + g)
+                * (guanYus + 1) + h) * (caoCaos + 1) + c;
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.jimzhouzzy.klotski;
+
+// Visited set with one off-heap bit per board of a piece set, addressed by
+// the board's PositionRanker rank. It never grows, never hashes and puts
+// nothing on the heap beyond the ranker's table, at the cost of reserving a
+// bit for every board that could exist rather than those actually reached.
+// Safe for concurrent add and contains.
+public class RankedVisitedSet implements VisitedSet {
+    private final PositionRanker ranker;
+    private final OffHeapBitSet bits;
+
+    public RankedVisitedSet(PositionRanker ranker) {
+        this.ranker = ranker;
+        this.bits = new OffHeapBitSet(ranker.size());
+    }
+
+    // Sized for the piece set of the given board
+    public static RankedVisitedSet forBoard(long board) {
+        return new RankedVisitedSet(PositionRanker.forBoard(board));
+    }
+
+    @Override
+    public boolean add(long key) {
+        return bits.add(ranker.rank(key));
+    }
+
+    @Override
+    public boolean contains(long key) {
+        return bits.get(ranker.rank(key));
+    }
+
+    @Override
+    public long size() {
+        return bits.cardinality();
+    }
+
+    public void clear() {
+        bits.clear();
+    }
+}
@@ -180,12 +180,11 @@ public class RectangleBlockActor extends Actor {
                         // TODO: support 2-step movement
                         rectangle.setPosition(snappedX, snappedY);
 
-                        // Update the game logic
-                        game.getPiece(pieceId).setPosition(new int[]{newRow, newCol});
-
-                        // Apply the action and record the move
-                        gameScreen.getGame().applyAction(new int[]{oldRow, oldCol}, new int[]{newRow, newCol});
-                        gameScreen.recordMove(new int[]{oldRow, oldCol}, new int[]{newRow, newCol});
+                        // Update the game logic; a drag can cross several cells, so the
+                        // piece is placed directly rather than stepped with applyAction
+                        if (gameScreen.getGame().movePiece(pieceId, new int[]{newRow, newCol})) {
+                            gameScreen.recordMove(new int[]{oldRow, oldCol}, new int[]{newRow, newCol});
+                        }
 
                         gameScreen.isTerminal = game.isTerminal(); // Check if the game is in a terminal state
                         gameScreen.broadcastGameState();
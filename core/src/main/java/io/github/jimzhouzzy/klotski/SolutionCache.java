@@ -0,0 +1,102 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded LRU map from a board to the rest of an optimal solution from it.
+// Every position along a solved path gets an entry, so later hints and
+// auto-solves from anywhere on that path need no search. All suffixes of a
+// path share one move array; an entry holds only a start index. Keys are
+// real boards, not canonical ones, so the moves apply without mirroring.
+// Thread-safe.
+public class SolutionCache {
+    private final int maxEntries;
+    private final LinkedHashMap<Long, Suffix> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SolutionCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        // Access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<Long, Suffix>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Suffix> eldest) {
+                if (size() > SolutionCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Remaining packed moves from the board, or null if it is not cached
+    public synchronized int[] get(long board) {
+        Suffix suffix = entries.get(board);
+        if (suffix == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return Arrays.copyOfRange(suffix.moves, suffix.start, suffix.moves.length);
+    }
+
+    // Like get, but leaves the counters and recency alone
+    public synchronized boolean contains(long board) {
+        return entries.containsKey(board);
+    }
+
+    // Caches every position the path passes through with the rest of the path
+    public synchronized void putPath(long board, int[] moves) {
+        int[] path = moves.clone();
+        for (int i = 0; i < path.length; i++) {
+            entries.put(board, new Suffix(path, i));
+            board = PackedBoard.applyMove(board, path[i]);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d/%d entries, %d hits, %d misses, %d evictions",
+                entries.size(), maxEntries, hits, misses, evictions);
+    }
+
+    private static class Suffix {
+        final int[] moves;
+        final int start;
+
+        Suffix(int[] moves, int start) {
+            this.moves = moves;
+            this.start = start;
+        }
+    }
+}
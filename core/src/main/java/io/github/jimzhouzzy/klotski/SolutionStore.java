@@ -0,0 +1,425 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+// Best moves remembered across sessions: board -> first move of an optimal
+// solution, so a position solved in an earlier run is answered by following
+// stored moves instead of searching. Boards are stored by canonical key, so
+// a position and its mirror image share one record and the move is mirrored
+// on the way out. On disk it is an append-only log in the config directory,
+// 16 bytes per record with a checksum; a record torn by a crash fails its
+// checksum and is cut off on the next load. In memory the index holds at
+// most maxEntries boards, least recently used first out. When the log holds
+// twice as many records as the index it is rewritten from the index, oldest
+// first, and atomically swapped in.
+// Loading, appending and compacting all happen on one background thread,
+// so callers never wait for the disk; lookups just miss until the log has
+// been read. Writes arriving after close are dropped.
+public class SolutionStore {
+    private static final String FILE_NAME = "solutions.log";
+    private static final int MAGIC = 0x4B534F4C; // "KSOL"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 16;
+    // Longest chain of stored moves followed for one solution
+    private static final int MAX_PATH = 1000;
+
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 15;
+
+    private static SolutionStore instance;
+
+    private final File file;
+    private final int maxEntries;
+    private final ExecutorService writer;
+    private final AtomicBoolean loadRequested = new AtomicBoolean();
+    private volatile boolean loaded;
+    private final Index index;
+
+    // Only used on the writer thread
+    private FileChannel log;
+    private long records;
+
+    public SolutionStore(File file, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Store size must be positive: " + maxEntries);
+        }
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.index = new Index(maxEntries);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "klotski-solution-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized SolutionStore getInstance() {
+        if (instance == null) {
+            instance = new SolutionStore(
+                    new File(new ConfigPathHelper().getConfigFilePath("Klotski", FILE_NAME)), DEFAULT_MAX_ENTRIES);
+        }
+        return instance;
+    }
+
+    // Finishes pending writes of the shared store, if it was ever used
+    public static synchronized void closeInstance() {
+        if (instance != null) {
+            instance.close();
+        }
+    }
+
+    // Starts reading the log in the background if that has not happened yet
+    public void warmUp() {
+        if (loadRequested.compareAndSet(false, true)) {
+            submit(this::load);
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Stored best move from the board, or -1 if there is none (or the log
+    // is still being read)
+    public int bestMove(long board) {
+        warmUp();
+        if (!loaded) {
+            return -1;
+        }
+        long key = PackedBoard.canonicalKey(board);
+        int move;
+        synchronized (index) {
+            move = index.get(key);
+        }
+        return move < 0 || key == board ? move : PackedBoard.mirrorMove(key, move);
+    }
+
+    // Packed moves to the goal made of stored best moves, or null if the
+    // chain is missing a position or does not lead to a solved board
+    public int[] solution(long board) {
+        int[] path = new int[16];
+        int length = 0;
+        int[] legal = new int[PackedBoard.MAX_MOVES];
+        while (!PackedBoard.isSolved(board)) {
+            int move = bestMove(board);
+            if (move < 0 || length == MAX_PATH || !isLegal(board, move, legal)) {
+                return null;
+            }
+            if (length == path.length) {
+                path = Arrays.copyOf(path, length * 2);
+            }
+            path[length++] = move;
+            board = PackedBoard.applyMove(board, move);
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    // Remembers the move out of every position along an optimal path. The
+    // index and the log are updated in the background.
+    public void putPath(long board, int[] moves) {
+        warmUp();
+        long[] boards = new long[moves.length];
+        int[] path = new int[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            long key = PackedBoard.canonicalKey(board);
+            boards[i] = key;
+            path[i] = key == board ? moves[i] : PackedBoard.mirrorMove(board, moves[i]);
+            board = PackedBoard.applyMove(board, moves[i]);
+        }
+        submit(() -> append(boards, path));
+    }
+
+    public int size() {
+        synchronized (index) {
+            return index.size;
+        }
+    }
+
+    public long getEvictions() {
+        synchronized (index) {
+            return index.evictions;
+        }
+    }
+
+    // Waits for queued writes, then closes the log
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (log != null) {
+                log.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to close solution log: " + e.getMessage());
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Closed on exit; a solve finishing now is just not remembered
+        }
+    }
+
+    private static boolean isLegal(long board, int move, int[] legal) {
+        int count = MoveGenerator.generate(board, legal);
+        for (int i = 0; i < count; i++) {
+            if (legal[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Reads every intact record into the index and opens the log for appending
+    private void load() {
+        try {
+            File parent = file.getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            log = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long valid = readLog();
+            if (valid < 0) {
+                // Missing, empty or from another version: start over
+                log.truncate(0);
+                writeHeader(log);
+                valid = HEADER_SIZE;
+            } else if (valid < log.size()) {
+                System.err.println("Dropping torn records from solution log: " + file);
+                log.truncate(valid);
+            }
+            log.position(valid);
+            records = (valid - HEADER_SIZE) / RECORD_SIZE;
+        } catch (IOException e) {
+            System.err.println("Failed to load solution log: " + e.getMessage());
+            log = null;
+        }
+        loaded = true;
+    }
+
+    // Length of the intact prefix of the log, or -1 if the header is not ours
+    private long readLog() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        log.position(0);
+        if (log.read(header) != HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            return -1;
+        }
+        long valid = HEADER_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096);
+        CRC32 crc = new CRC32();
+        while (true) {
+            buffer.clear();
+            int read = log.read(buffer, valid);
+            if (read < RECORD_SIZE) {
+                return valid;
+            }
+            for (int offset = 0; offset + RECORD_SIZE <= read; offset += RECORD_SIZE) {
+                long board = buffer.getLong(offset);
+                int move = buffer.getInt(offset + 8);
+                if (buffer.getInt(offset + 12) != checksum(crc, board, move)) {
+                    return valid;
+                }
+                synchronized (index) {
+                    index.put(board, move);
+                }
+                valid += RECORD_SIZE;
+            }
+        }
+    }
+
+    private void append(long[] boards, int[] moves) {
+        if (log == null) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * boards.length);
+        CRC32 crc = new CRC32();
+        synchronized (index) {
+            for (int i = 0; i < boards.length; i++) {
+                if (index.put(boards[i], moves[i]) == moves[i]) {
+                    continue; // Already in the log; the put only refreshed it
+                }
+                buffer.putLong(boards[i]).putInt(moves[i]).putInt(checksum(crc, boards[i], moves[i]));
+            }
+        }
+        buffer.flip();
+        try {
+            records += buffer.remaining() / RECORD_SIZE;
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            log.force(false);
+            if (records > 2L * maxEntries) {
+                compact();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write solution log: " + e.getMessage());
+        }
+    }
+
+    // Rewrites the log as just the live entries, least recently used first,
+    // so the order carries over to the next session. If the swap fails the
+    // old log stays in place and appending carries on there.
+    private void compact() throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer;
+        synchronized (index) {
+            buffer = ByteBuffer.allocate(RECORD_SIZE * index.size);
+            for (int slot = index.eldest; slot >= 0; slot = index.newer[slot]) {
+                long board = index.boards[slot];
+                int move = index.moves[slot];
+                buffer.putLong(board).putInt(move).putInt(checksum(crc, board, move));
+            }
+        }
+        buffer.flip();
+        long compacted = buffer.remaining() / RECORD_SIZE;
+        try {
+            AtomicFile.replace(file, temp -> {
+                try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                    writeHeader(out);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    out.force(true);
+                }
+                // Windows cannot replace a file that is still open
+                log.close();
+            });
+            records = compacted;
+        } finally {
+            if (!log.isOpen()) {
+                log = null;
+                FileChannel reopened = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                reopened.position(reopened.size());
+                log = reopened;
+            }
+        }
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.position(HEADER_SIZE);
+    }
+
+    private static int checksum(CRC32 crc, long board, int move) {
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (board >>> shift));
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            crc.update(move >>> shift);
+        }
+        return (int) crc.getValue();
+    }
+
+    // Board -> best move with least-recently-used eviction, in primitive
+    // arrays: the map gives each board a slot, and the slots form a doubly
+    // linked list from least to most recently used. Guarded by its monitor.
+    private static final class Index {
+        private final LongIntHashMap slots;
+        private final long[] boards;
+        private final int[] moves;
+        private final int[] older;
+        private final int[] newer;
+        private int eldest = -1;
+        private int newest = -1;
+        private int size;
+        private long evictions;
+
+        Index(int capacity) {
+            slots = new LongIntHashMap(capacity);
+            boards = new long[capacity];
+            moves = new int[capacity];
+            older = new int[capacity];
+            newer = new int[capacity];
+        }
+
+        // The stored move, or -1; counts as a use of the board
+        int get(long board) {
+            int slot = slots.get(board, -1);
+            if (slot < 0) {
+                return -1;
+            }
+            touch(slot);
+            return moves[slot];
+        }
+
+        // Stores the move and returns the one it replaced, or -1
+        int put(long board, int move) {
+            int slot = slots.get(board, -1);
+            if (slot >= 0) {
+                int replaced = moves[slot];
+                moves[slot] = move;
+                touch(slot);
+                return replaced;
+            }
+            if (size < boards.length) {
+                slot = size++;
+            } else {
+                slot = eldest;
+                unlink(slot);
+                slots.remove(boards[slot]);
+                evictions++;
+            }
+            boards[slot] = board;
+            moves[slot] = move;
+            slots.put(board, slot);
+            link(slot);
+            return -1;
+        }
+
+        private void touch(int slot) {
+            if (slot != newest) {
+                unlink(slot);
+                link(slot);
+            }
+        }
+
+        private void unlink(int slot) {
+            if (older[slot] >= 0) {
+                newer[older[slot]] = newer[slot];
+            } else {
+                eldest = newer[slot];
+            }
+            if (newer[slot] >= 0) {
+                older[newer[slot]] = older[slot];
+            } else {
+                newest = older[slot];
+            }
+        }
+
+        // Appends the slot as the most recently used
+        private void link(int slot) {
+            older[slot] = newest;
+            newer[slot] = -1;
+            if (newest >= 0) {
+                newer[newest] = slot;
+            } else {
+                eldest = slot;
+            }
+            newest = slot;
+        }
+    }
+}
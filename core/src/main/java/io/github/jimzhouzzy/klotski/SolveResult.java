@@ -0,0 +1,50 @@
+package io.github.jimzhouzzy.klotski;
+
+// Outcome of a SolverEngine run: the packed moves (null when the goal is
+// unreachable) plus counters for comparing engines.
+public class SolveResult {
+    private final int[] moves;
+    private final long nodesExpanded;
+    private final long statesVisited;
+    private final int solutionsFound;
+    private final long elapsedNanos;
+
+    public SolveResult(int[] moves, long nodesExpanded, long statesVisited, int solutionsFound, long elapsedNanos) {
+        this.moves = moves;
+        this.nodesExpanded = nodesExpanded;
+        this.statesVisited = statesVisited;
+        this.solutionsFound = solutionsFound;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public boolean isSolved() {
+        return moves != null;
+    }
+
+    public int[] getMoves() {
+        return moves;
+    }
+
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    public long getStatesVisited() {
+        return statesVisited;
+    }
+
+    public int getSolutionsFound() {
+        return solutionsFound;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s in %.3f ms (%d nodes expanded, %d states visited)",
+                isSolved() ? moves.length + " moves" : "no solution",
+                elapsedNanos / 1e6, nodesExpanded, statesVisited);
+    }
+}
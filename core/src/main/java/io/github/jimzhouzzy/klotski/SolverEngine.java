@@ -0,0 +1,9 @@
+package io.github.jimzhouzzy.klotski;
+
+// A search strategy over packed boards (see PackedBoard).
+// Every engine returns optimal solutions; they differ in speed and memory.
+public interface SolverEngine {
+    String getName();
+
+    SolveResult solve(long board);
+}
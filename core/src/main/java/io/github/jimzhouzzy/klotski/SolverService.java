@@ -0,0 +1,124 @@
+package io.github.jimzhouzzy.klotski;
+
+import com.badlogic.gdx.Gdx;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+// Runs solver searches on a background thread so the render thread never
+// waits for them. The board is copied when a request is submitted; the
+// result is handed back on the render thread (Gdx.app.postRunnable) and only
+// if the request is still wanted: it is dropped if it was cancelled or the
+// game has moved on from the submitted position in the meantime.
+// A search that has already started runs to the end; cancelling it only
+// discards its result. Queued requests that were cancelled never start.
+// All work shares one minimum-priority thread, so it never takes more than
+// one core from the render thread.
+public class SolverService {
+    private final ExecutorService executor;
+    private final Executor callbackExecutor;
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    // Latest prefetch; only touched on the thread that owns the game
+    private KlotskiPosition prefetchedPosition;
+    private CompletableFuture<List<Move>> prefetched;
+
+    public SolverService() {
+        this(runnable -> Gdx.app.postRunnable(runnable));
+    }
+
+    // Results are completed through callbackExecutor, e.g. Runnable::run for tools and tests
+    public SolverService(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "klotski-solver");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    // Solution for the game as it is now, from the tablebase. Reuses the
+    // prefetch for this position if there is one, finished or not.
+    public CompletableFuture<List<Move>> solve(KlotskiGame game) {
+        if (prefetched != null && !prefetched.isCancelled() && !prefetched.isCompletedExceptionally()
+                && prefetchedPosition.equals(game.snapshot())) {
+            return prefetched;
+        }
+        return solve(game, SolverService::solveAndStore);
+    }
+
+    // Starts solving the current position ahead of a likely hint request.
+    // Replaces the previous prefetch, which is cancelled.
+    public void prefetch(KlotskiGame game) {
+        cancelPrefetch();
+        prefetchedPosition = game.snapshot();
+        prefetched = solve(game, SolverService::solveAndStore);
+    }
+
+    // Drops the latest prefetch, so it never starts if it is still queued
+    public void cancelPrefetch() {
+        if (prefetched != null) {
+            prefetched.cancel(false);
+            prefetched = null;
+            prefetchedPosition = null;
+        }
+    }
+
+    // Runs solver on a private copy of the game. Must be called on the thread
+    // that owns the game, which is also where the future completes.
+    public CompletableFuture<List<Move>> solve(KlotskiGame game, Function<KlotskiGame, List<Move>> solver) {
+        KlotskiPosition position = game.snapshot();
+        KlotskiGame copy = new KlotskiGame();
+        copy.setPieces(game.getPieces());
+
+        CompletableFuture<List<Move>> result = new CompletableFuture<>();
+        pending.add(result);
+        result.whenComplete((solution, error) -> pending.remove(result));
+
+        executor.execute(() -> {
+            if (result.isDone()) {
+                return; // Cancelled while queued
+            }
+            try {
+                List<Move> solution = solver.apply(copy);
+                callbackExecutor.execute(() -> {
+                    if (!game.snapshot().equals(position)) {
+                        result.cancel(false); // The board changed after the request
+                    } else {
+                        result.complete(solution);
+                    }
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Failed to solve: " + e.getMessage());
+                callbackExecutor.execute(() -> result.completeExceptionally(e));
+            }
+        });
+        return result;
+    }
+
+    // Tablebase solve whose result also goes to the persistent solution store
+    private static List<Move> solveAndStore(KlotskiGame game) {
+        List<Move> solution = KlotskiSolver.solveMovesFromTablebase(game);
+        KlotskiSolver.storeSolution(game, solution);
+        return solution;
+    }
+
+    // Cancels every request that has not delivered its result yet
+    public void cancelAll() {
+        for (CompletableFuture<?> request : pending) {
+            request.cancel(false);
+        }
+    }
+
+    public void shutdown() {
+        cancelAll();
+        executor.shutdownNow();
+    }
+}
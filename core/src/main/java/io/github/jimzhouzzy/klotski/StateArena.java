@@ -0,0 +1,68 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.Arrays;
+
+// Search nodes stored as parallel primitive arrays: a node is just its index.
+// Storage grows one fixed-size chunk at a time, so existing nodes are never
+// copied and a node costs 14 bytes (packed board, parent index, packed move).
+public class StateArena {
+    public static final int NO_PARENT = -1;
+
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private long[][] states = new long[4][];
+    private int[][] parentIndices = new int[4][];
+    private short[][] moves = new short[4][];
+    private int size;
+
+    // Appends a node and returns its index
+    public int add(long state, int parentIndex, int move) {
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == states.length) {
+            states = Arrays.copyOf(states, chunk << 1);
+            parentIndices = Arrays.copyOf(parentIndices, chunk << 1);
+            moves = Arrays.copyOf(moves, chunk << 1);
+        }
+        if (states[chunk] == null) {
+            states[chunk] = new long[CHUNK_SIZE];
+            parentIndices[chunk] = new int[CHUNK_SIZE];
+            moves[chunk] = new short[CHUNK_SIZE];
+        }
+        int offset = size & CHUNK_MASK;
+        states[chunk][offset] = state;
+        parentIndices[chunk][offset] = parentIndex;
+        moves[chunk][offset] = (short) move;
+        return size++;
+    }
+
+    public long state(int index) {
+        return states[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public int parentIndex(int index) {
+        return parentIndices[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public int move(int index) {
+        return moves[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Moves from the root to the given node, in playing order
+    public int[] path(int index) {
+        int depth = 0;
+        for (int i = index; parentIndex(i) != NO_PARENT; i = parentIndex(i)) {
+            depth++;
+        }
+        int[] path = new int[depth];
+        for (int i = index; depth > 0; i = parentIndex(i)) {
+            path[--depth] = move(i);
+        }
+        return path;
+    }
+}
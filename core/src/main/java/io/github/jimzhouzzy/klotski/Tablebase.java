@@ -0,0 +1,225 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Distance-to-goal for every position that can reach a goal, computed by a
+// backward BFS seeded with all goal positions (Cao Cao at (3,1), the other
+// pieces in every arrangement that fits). Moves are reversible, so the
+// backward search is an ordinary BFS over canonical keys. Once built, hints
+// and full solutions are lookups plus a walk downhill in distance.
+// MappedTablebase keeps the same numbers on disk.
+public class Tablebase implements DistanceTable {
+    // Queue entries expanded per call to BatchMoveGenerator
+    private static final int BATCH = 256;
+
+    // One table per piece set, keyed by pieceCounts
+    private static final Map<Integer, Tablebase> instances = new HashMap<>();
+
+    private final LongIntHashMap distances;
+    private final int maxDistance;
+    private final long buildNanos;
+
+    private Tablebase(LongIntHashMap distances, int maxDistance, long buildNanos) {
+        this.distances = distances;
+        this.maxDistance = maxDistance;
+        this.buildNanos = buildNanos;
+    }
+
+    // Returns the table for the board's piece set, building it on first use
+    public static synchronized Tablebase forBoard(long board) {
+        int counts = pieceCounts(board);
+        Tablebase tablebase = instances.get(counts);
+        if (tablebase == null) {
+            tablebase = build(board);
+            instances.put(counts, tablebase);
+        }
+        return tablebase;
+    }
+
+    public static Tablebase forGame(KlotskiGame game) {
+        return forBoard(PackedBoard.encode(game));
+    }
+
+    public static Tablebase build(long board) {
+        long startTime = System.nanoTime();
+        int counts = pieceCounts(board);
+        if (countOf(counts, PackedBoard.CAO_CAO_TOP_LEFT) != 1) {
+            throw new IllegalArgumentException("A tablebase needs exactly one Cao Cao");
+        }
+
+        // Seed the queue with every goal position
+        long caoCao = PackedBoard.pieceBits(PackedBoard.CAO_CAO_TOP_LEFT, PackedBoard.GOAL_CELL);
+        int caoCaoCells = PackedBoard.cellMask(PackedBoard.CAO_CAO_TOP_LEFT, PackedBoard.GOAL_CELL);
+        LongArray queue = new LongArray();
+        LongIntHashMap distances = new LongIntHashMap(KlotskiSolver.DEFAULT_EXPECTED_STATES);
+        tile(caoCao, caoCaoCells, 0,
+                countOf(counts, PackedBoard.SOLDIER),
+                countOf(counts, PackedBoard.GENERAL_TOP),
+                countOf(counts, PackedBoard.GUAN_YU_LEFT),
+                queue, distances);
+
+        // Distances do not depend on the order successors come in, so the
+        // queue is expanded a block at a time by the batch generator
+        long[] nextStates = new long[BATCH * PackedBoard.MAX_MOVES];
+        int[] nextMoves = new int[BATCH * PackedBoard.MAX_MOVES];
+        int[] parents = new int[BATCH * PackedBoard.MAX_MOVES];
+        int maxDistance = 0;
+        for (int head = 0; head < queue.size(); ) {
+            int end = Math.min(head + BATCH, queue.size());
+            int count = BatchMoveGenerator.expand(queue.array(), head, end, nextStates, nextMoves, parents);
+            int parent = -1;
+            int distance = 0;
+            for (int i = 0; i < count; i++) {
+                if (parents[i] != parent) {
+                    parent = parents[i];
+                    distance = distances.get(queue.get(parent), UNREACHABLE) + 1;
+                }
+                long key = PackedBoard.canonicalKey(nextStates[i]);
+                if (distances.putIfAbsent(key, distance)) {
+                    queue.add(key);
+                    maxDistance = distance;
+                }
+            }
+            head = end;
+        }
+        return new Tablebase(distances, maxDistance, System.nanoTime() - startTime);
+    }
+
+    // Places the remaining pieces on every free cell from the given one onwards.
+    // The first free cell is either left empty or becomes some piece's
+    // top-left corner, so each tiling is produced exactly once.
+    private static void tile(long board, int occupied, int cell, int soldiers, int generals, int guanYus,
+                             LongArray goals, LongIntHashMap distances) {
+        while (cell < PackedBoard.CELLS && (occupied & (1 << cell)) != 0) {
+            cell++;
+        }
+        int free = PackedBoard.CELLS - Integer.bitCount(occupied);
+        int needed = soldiers + 2 * generals + 2 * guanYus;
+        if (needed == 0) {
+            long key = PackedBoard.canonicalKey(board);
+            if (distances.putIfAbsent(key, 0)) {
+                goals.add(key);
+            }
+            return;
+        }
+        if (needed > free) {
+            return;
+        }
+
+        if (needed < free) {
+            tile(board, occupied | 1 << cell, cell + 1, soldiers, generals, guanYus, goals, distances);
+        }
+        if (soldiers > 0) {
+            tile(board | PackedBoard.pieceBits(PackedBoard.SOLDIER, cell), occupied | 1 << cell, cell + 1,
+                    soldiers - 1, generals, guanYus, goals, distances);
+        }
+        if (generals > 0 && fits(PackedBoard.GENERAL_TOP, cell, occupied)) {
+            tile(board | PackedBoard.pieceBits(PackedBoard.GENERAL_TOP, cell),
+                    occupied | PackedBoard.cellMask(PackedBoard.GENERAL_TOP, cell), cell + 1,
+                    soldiers, generals - 1, guanYus, goals, distances);
+        }
+        if (guanYus > 0 && fits(PackedBoard.GUAN_YU_LEFT, cell, occupied)) {
+            tile(board | PackedBoard.pieceBits(PackedBoard.GUAN_YU_LEFT, cell),
+                    occupied | PackedBoard.cellMask(PackedBoard.GUAN_YU_LEFT, cell), cell + 1,
+                    soldiers, generals, guanYus - 1, goals, distances);
+        }
+    }
+
+    private static boolean fits(int code, int cell, int occupied) {
+        int row = cell / PackedBoard.WIDTH;
+        int col = cell % PackedBoard.WIDTH;
+        if (row + PackedBoard.heightOf(code) > PackedBoard.HEIGHT
+                || col + PackedBoard.widthOf(code) > PackedBoard.WIDTH) {
+            return false;
+        }
+        return (occupied & PackedBoard.cellMask(code, cell)) == 0;
+    }
+
+    // Number of pieces of each shape, one byte per top-left code
+    static int pieceCounts(long board) {
+        int counts = 0;
+        for (int cell = 0; cell < PackedBoard.CELLS; cell++) {
+            int code = PackedBoard.cellAt(board, cell);
+            if (PackedBoard.isTopLeft(code)) {
+                counts += 1 << shiftOf(code);
+            }
+        }
+        return counts;
+    }
+
+    static int countOf(int counts, int code) {
+        return (counts >>> shiftOf(code)) & 0xFF;
+    }
+
+    private static int shiftOf(int code) {
+        switch (code) {
+            case PackedBoard.SOLDIER:
+                return 0;
+            case PackedBoard.GENERAL_TOP:
+                return 8;
+            case PackedBoard.GUAN_YU_LEFT:
+                return 16;
+            default:
+                return 24;
+        }
+    }
+
+    @Override
+    public int distance(long board) {
+        return distances.get(PackedBoard.canonicalKey(board), UNREACHABLE);
+    }
+
+    @Override
+    public long size() {
+        return distances.size();
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    @Override
+    public String getName() {
+        return "Tablebase";
+    }
+
+    // Growable queue of longs
+    private static class LongArray {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        // Backing array, valid up to size() until the next add
+        long[] array() {
+            return values;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    public static void main(String[] args) {
+        Tablebase tablebase = forGame(new KlotskiGame());
+        System.out.printf("Built in %.3f seconds\n", tablebase.getBuildNanos() / 1e9);
+        System.out.printf("  %d positions (up to mirroring) can reach the goal\n", tablebase.size());
+        System.out.printf("  %d moves from the farthest of them\n", tablebase.getMaxDistance());
+        System.out.printf("  %d moves from the starting layout\n", tablebase.distance(new KlotskiGame()));
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.jimzhouzzy.klotski;
+
+import java.util.Arrays;
+
+// Fixed-size table of learned lower bounds on distance-to-goal, keyed by
+// canonical board. Memory is allocated once from a megabyte budget as
+// primitive arrays (12 bytes per entry) and never grows. Entries sit in
+// two-slot buckets with depth-preferred replacement: a bound from a deeper
+// search takes the first slot and pushes the old one to the second.
+// Bounds are facts about positions, not about one search, so they stay
+// valid across solves.
+public class TranspositionTable {
+    private static final int ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final long[] keys;
+    // Bound in the high 16 bits, draft (remaining search depth) in the low 16
+    private final int[] entries;
+    private final int buckets;
+
+    public TranspositionTable(int megabytes) {
+        long slots = (long) megabytes * 1024 * 1024 / ENTRY_BYTES;
+        if (slots < 2 || slots > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Unsupported table size: " + megabytes + " MB");
+        }
+        buckets = (int) (slots / 2);
+        keys = new long[buckets * 2];
+        entries = new int[buckets * 2];
+    }
+
+    // Stored lower bound for the board, or 0 if none
+    public int bound(long key) {
+        int slot = bucketOf(key);
+        if (keys[slot] == key) return entries[slot] >>> 16;
+        if (keys[slot + 1] == key) return entries[slot + 1] >>> 16;
+        return 0;
+    }
+
+    public void store(long key, int bound, int draft) {
+        bound = Math.min(bound, 0xFFFF);
+        draft = Math.min(draft, 0xFFFF);
+        int slot = bucketOf(key);
+        int target;
+        if (keys[slot] == key) {
+            target = slot;
+        } else if (keys[slot + 1] == key) {
+            target = slot + 1;
+        } else {
+            // The first slot keeps the deepest search seen, the second always
+            // takes the newest board, so shallow results still get cached
+            if (keys[slot] == 0L || draft >= (entries[slot] & 0xFFFF)) {
+                keys[slot + 1] = keys[slot];
+                entries[slot + 1] = entries[slot];
+                target = slot;
+            } else {
+                target = slot + 1;
+            }
+            keys[target] = key;
+            entries[target] = bound << 16 | draft;
+            return;
+        }
+        int held = entries[target];
+        entries[target] = Math.max(held >>> 16, bound) << 16 | Math.max(held & 0xFFFF, draft);
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(entries, 0);
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int bucketOf(long key) {
+        // Maps the hash onto [0, buckets) without requiring a power of two
+        return (int) (((LongHashSet.mix(key) & 0xFFFFFFFFL) * buckets) >>> 32) << 1;
+    }
+}
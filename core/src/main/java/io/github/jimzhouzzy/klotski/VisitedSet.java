@@ -0,0 +1,13 @@
+package io.github.jimzhouzzy.klotski;
+
+// Set of canonical boards a search has already reached. LongHashSet is the
+// default; RankedVisitedSet trades it for one bit per possible board, kept
+// off the heap.
+public interface VisitedSet {
+    // Adds the key and reports whether it was new
+    boolean add(long key);
+
+    boolean contains(long key);
+
+    long size();
+}